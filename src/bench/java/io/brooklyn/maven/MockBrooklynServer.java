@@ -0,0 +1,107 @@
+package io.brooklyn.maven;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.brooklyn.util.collections.Jsonya;
+
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * A stand-in for a Brooklyn server for benchmarks. Every response is delayed by a
+ * configurable latency. Applications report that they are starting until a configurable
+ * time after {@link #resetApplications()} and running after that. Sensor requests return
+ * a value for each of a configurable number of entities.
+ */
+public class MockBrooklynServer {
+
+    private final MockWebServer server = new MockWebServer();
+    private volatile long latencyMillis;
+    private volatile long startupMillis;
+    private volatile int entities = 1;
+    private volatile long applicationsReset = System.currentTimeMillis();
+
+    public MockBrooklynServer() {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (latencyMillis > 0) {
+                    TimeUnit.MILLISECONDS.sleep(latencyMillis);
+                }
+                return respond(request.getPath());
+            }
+        });
+    }
+
+    public MockBrooklynServer start() throws IOException {
+        server.play();
+        return this;
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    public URL getUrl() {
+        return server.getUrl("/");
+    }
+
+    public int getRequestCount() {
+        return server.getRequestCount();
+    }
+
+    /** Sets the delay before every response. */
+    public MockBrooklynServer latency(long millis) {
+        this.latencyMillis = millis;
+        return this;
+    }
+
+    /** Sets how long after {@link #resetApplications()} applications report that they are running. */
+    public MockBrooklynServer startupTime(long millis) {
+        this.startupMillis = millis;
+        return this;
+    }
+
+    /** Sets the number of entities that have a value for every sensor. */
+    public MockBrooklynServer entities(int entities) {
+        this.entities = entities;
+        return this;
+    }
+
+    /** Makes every application start again. */
+    public void resetApplications() {
+        applicationsReset = System.currentTimeMillis();
+    }
+
+    private MockResponse respond(String path) {
+        String body;
+        if (path.contains("/descendants/sensor/")) {
+            Jsonya.Navigator<?> values = Jsonya.newInstance();
+            for (int i = 0; i < entities; i++) {
+                values.put("entity" + i, "value" + i);
+            }
+            body = values.toString();
+        } else if (path.startsWith("/v1/applications/")) {
+            boolean running = System.currentTimeMillis() - applicationsReset >= startupMillis;
+            body = Jsonya.newInstance()
+                    .put("status", running ? "RUNNING" : "STARTING")
+                    .at("spec", "locations").list().add("localhost")
+                    .root()
+                    .toString();
+        } else if (path.startsWith("/v1/server/up")) {
+            body = "true";
+        } else {
+            return new MockResponse().setResponseCode(404);
+        }
+        return new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+                .setBody(body);
+    }
+
+}
@@ -0,0 +1,80 @@
+package io.brooklyn.maven.fork;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.util.os.Os;
+import org.apache.maven.shared.utils.cli.Commandline;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Measures {@link BasicBrooklynForker#buildCommandLine} for long classpaths, with the
+ * classpath given on the command line or in a pathing jar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommandLineBenchmark {
+
+    @Param({"100", "1000"})
+    public int entries;
+
+    @Param({"false", "true"})
+    public boolean usePathingJar;
+
+    private BasicBrooklynForker forker;
+    private Path workDir;
+    private ForkOptions options;
+
+    @Setup(Level.Trial)
+    public void createForker() throws Exception {
+        forker = new BasicBrooklynForker();
+        forker.setLogger(new ConsoleLogger(Logger.LEVEL_DISABLED, "benchmark"));
+        List<Path> classpath = Lists.newArrayList();
+        for (int i = 0; i < entries; i++) {
+            classpath.add(Paths.get("/home/user/.m2/repository/org/example/group" + (i % 20) +
+                    "/artifact-" + i + "/1.0/artifact-" + i + "-1.0.jar"));
+        }
+        // The forker reuses an existing work directory, so one serves every invocation.
+        workDir = Files.createTempDirectory("command-line-benchmark");
+        options = ForkOptions.builder()
+                .workDir(workDir)
+                .javaOptions(Collections.singletonList("-Xmx512m"))
+                .additionalArguments(Collections.<String>emptyList())
+                .classpath(classpath)
+                .usePathingJar(usePathingJar)
+                .mainClass("org.apache.brooklyn.cli.Main")
+                .launchCommand("launch")
+                .bindAddress("127.0.0.1")
+                .bindPort("8081")
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteWorkDir() {
+        Os.deleteRecursively(workDir.toFile());
+    }
+
+    @Benchmark
+    public Commandline buildCommandLine() throws Exception {
+        return forker.buildCommandLine(options);
+    }
+
+}
@@ -0,0 +1,78 @@
+package io.brooklyn.maven.fork;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.MavenArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.testing.stubs.MavenProjectStub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Measures {@link ProjectDependencySupplier#get} for projects with many dependencies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProjectDependencySupplierBenchmark {
+
+    @Param({"50", "500"})
+    public int artifacts;
+
+    private ProjectDependencySupplier supplier;
+
+    @Setup
+    public void createSupplier() throws Exception {
+        final Set<Artifact> dependencies = Sets.newLinkedHashSet();
+        DefaultArtifactHandler handler = new DefaultArtifactHandler("jar");
+        for (int i = 0; i < artifacts; i++) {
+            dependencies.add(new DefaultArtifact("org.example.group" + (i % 20), "artifact-" + i, "1.0." + i,
+                    Artifact.SCOPE_COMPILE, "jar", null, handler));
+        }
+        MavenProjectStub project = new MavenProjectStub() {
+            @Override
+            public Set<Artifact> getArtifacts() {
+                return dependencies;
+            }
+
+            @Override
+            public void setArtifactFilter(ArtifactFilter artifactFilter) {
+            }
+        };
+        Build build = new Build();
+        build.setOutputDirectory("target/classes");
+        build.setTestOutputDirectory("target/test-classes");
+        project.setBuild(build);
+        Path repository = Files.createTempDirectory("repository");
+        ArtifactRepository localRepository = new MavenArtifactRepository("local", repository.toUri().toString(),
+                new DefaultRepositoryLayout(), null, null);
+        supplier = new ProjectDependencySupplier()
+                .setProject(project)
+                .setLocalRepository(localRepository)
+                .setScope(Artifact.SCOPE_TEST);
+    }
+
+    @Benchmark
+    public List<Path> get() {
+        return supplier.get();
+    }
+
+}
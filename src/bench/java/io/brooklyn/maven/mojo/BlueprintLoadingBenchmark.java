@@ -0,0 +1,59 @@
+package io.brooklyn.maven.mojo;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+
+/**
+ * Measures {@link DeployBlueprintMojo#loadBlueprint} for blueprints of various sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlueprintLoadingBenchmark {
+
+    @Param({"1024", "65536", "4194304"})
+    public int size;
+
+    private File blueprint;
+    private DeployBlueprintMojo mojo;
+
+    @Setup
+    public void writeBlueprint() throws Exception {
+        blueprint = File.createTempFile("blueprint", ".yaml");
+        StringBuilder yaml = new StringBuilder("services:\n");
+        int i = 0;
+        while (yaml.length() < size) {
+            yaml.append("- type: org.apache.brooklyn.entity.stock.BasicEntity\n")
+                    .append("  name: entity-").append(i++).append(" ").append(Strings.repeat("x", 40)).append('\n');
+        }
+        Files.write(blueprint.toPath(), yaml.toString().getBytes(Charsets.UTF_8));
+        mojo = new DeployBlueprintMojo(null, blueprint.getAbsolutePath());
+        mojo.setLog(new SilentLog());
+    }
+
+    @TearDown
+    public void deleteBlueprint() {
+        blueprint.delete();
+    }
+
+    @Benchmark
+    public String loadBlueprint() throws Exception {
+        return mojo.loadBlueprint(blueprint.getAbsolutePath());
+    }
+
+}
@@ -0,0 +1,43 @@
+package io.brooklyn.maven.mojo;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Measures {@link QuerySensorMojo#formatValue} for results from various numbers of entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SensorFormattingBenchmark {
+
+    @Param({"1", "10", "1000"})
+    public int entities;
+
+    private Map<String, Object> matches;
+
+    @Setup
+    public void createMatches() {
+        matches = Maps.newLinkedHashMap();
+        for (int i = 0; i < entities; i++) {
+            matches.put("entity" + i, "10.0.0." + (i % 256));
+        }
+    }
+
+    @Benchmark
+    public String formatValue() {
+        return QuerySensorMojo.formatValue(matches);
+    }
+
+}
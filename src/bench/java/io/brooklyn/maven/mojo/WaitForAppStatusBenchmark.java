@@ -0,0 +1,71 @@
+package io.brooklyn.maven.mojo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.rest.domain.Status;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.brooklyn.maven.MockBrooklynServer;
+import io.brooklyn.maven.poll.PollStrategy;
+
+/**
+ * Measures how long {@link AbstractInvokeBrooklynMojo#waitForAppStatus} takes to notice
+ * that an application is running, for each poll strategy and several server latencies.
+ * The difference from {@link #startupMillis} is the overhead of polling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WaitForAppStatusBenchmark {
+
+    @Param({"FIXED", "EXPONENTIAL", "FAST_START"})
+    public PollStrategy pollStrategy;
+
+    @Param({"0", "20"})
+    public long latencyMillis;
+
+    @Param({"300", "3000"})
+    public long startupMillis;
+
+    private MockBrooklynServer server;
+    private StopApplicationMojo mojo;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        server = new MockBrooklynServer()
+                .latency(latencyMillis)
+                .startupTime(startupMillis)
+                .start();
+        mojo = new StopApplicationMojo(server.getUrl(), "app");
+        mojo.setLog(new SilentLog());
+        mojo.setPollPeriod(1, TimeUnit.SECONDS);
+        mojo.setPollStrategy(pollStrategy);
+        mojo.setTimeout(1, TimeUnit.MINUTES);
+    }
+
+    @Setup(Level.Invocation)
+    public void restartApplication() {
+        server.resetApplications();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public Status waitForRunning() {
+        return mojo.waitForAppStatus("app", Status.RUNNING);
+    }
+
+}
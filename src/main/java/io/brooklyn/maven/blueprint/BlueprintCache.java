@@ -0,0 +1,191 @@
+package io.brooklyn.maven.blueprint;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CharStreams;
+
+/**
+ * Fetches remote blueprints, keeping a copy of each in a local directory.
+ * <p/>
+ * A copy younger than the configured time-to-live is used without contacting the remote
+ * server. Older copies are revalidated with a conditional request using the ETag and
+ * Last-Modified headers of the response they came from. If the remote server cannot
+ * be reached or responds with an error the cached copy is used regardless of its age.
+ * <p/>
+ * Only HTTP and HTTPS responses are cached. Other URLs are read directly.
+ */
+public class BlueprintCache {
+
+    private static final String METADATA_SUFFIX = ".properties";
+    private static final String CONTENT_SUFFIX = ".yaml";
+    private static final String URL_KEY = "url";
+    private static final String ETAG_KEY = "etag";
+    private static final String LAST_MODIFIED_KEY = "lastModified";
+    private static final String FETCHED_KEY = "fetched";
+
+    @Nullable
+    private final Path directory;
+    private final long ttlMillis;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final Log log;
+
+    /**
+     * @param directory The directory to keep blueprints in. Nothing is cached if null.
+     */
+    public BlueprintCache(@Nullable Path directory, long ttl, long connectTimeout, long readTimeout,
+            TimeUnit unit, Log log) {
+        this.directory = directory;
+        this.ttlMillis = unit.toMillis(ttl);
+        this.connectTimeoutMillis = (int) unit.toMillis(connectTimeout);
+        this.readTimeoutMillis = (int) unit.toMillis(readTimeout);
+        this.log = checkNotNull(log, "log");
+    }
+
+    /**
+     * @return The contents of the given URL, from the cache if possible.
+     * @throws IOException if the URL could not be read and there is no cached copy.
+     */
+    public String get(URL url, Charset charset) throws IOException {
+        boolean cacheable = directory != null &&
+                ("http".equalsIgnoreCase(url.getProtocol()) || "https".equalsIgnoreCase(url.getProtocol()));
+        if (!cacheable) {
+            URLConnection connection = url.openConnection();
+            configure(connection);
+            return read(connection, charset);
+        }
+
+        String key = Hashing.sha1().hashString(url.toString(), Charsets.UTF_8).toString();
+        Path content = directory.resolve(key + CONTENT_SUFFIX);
+        Path metadataFile = directory.resolve(key + METADATA_SUFFIX);
+        Properties metadata = readMetadata(metadataFile);
+        boolean cached = metadata != null && Files.isRegularFile(content);
+
+        if (cached) {
+            long age = System.currentTimeMillis() - Long.parseLong(metadata.getProperty(FETCHED_KEY, "0"));
+            if (age < ttlMillis) {
+                log.debug("Using cached copy of " + url + " fetched " + age + "ms ago");
+                return readCached(content, charset);
+            }
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        configure(connection);
+        if (cached) {
+            if (metadata.getProperty(ETAG_KEY) != null) {
+                connection.setRequestProperty("If-None-Match", metadata.getProperty(ETAG_KEY));
+            }
+            if (metadata.getProperty(LAST_MODIFIED_KEY) != null) {
+                connection.setRequestProperty("If-Modified-Since", metadata.getProperty(LAST_MODIFIED_KEY));
+            }
+        }
+        try {
+            int status = connection.getResponseCode();
+            if (cached && status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                log.debug("Cached copy of " + url + " is up to date");
+                connection.getInputStream().close();
+                metadata.setProperty(FETCHED_KEY, Long.toString(System.currentTimeMillis()));
+                try {
+                    writeMetadata(metadataFile, metadata);
+                } catch (IOException e) {
+                    log.debug("Unable to update cache metadata " + metadataFile + ": " + e.getMessage());
+                }
+                return readCached(content, charset);
+            } else if (status >= 400) {
+                throw new IOException("Server returned HTTP response code " + status + " for URL " + url);
+            }
+            String body = read(connection, charset);
+            write(url, connection, content, metadataFile, body, charset);
+            return body;
+        } catch (IOException e) {
+            if (!cached) {
+                throw e;
+            }
+            log.warn("Unable to fetch " + url + ", using copy cached at " + content + ": " + e.getMessage());
+            return readCached(content, charset);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void configure(URLConnection connection) {
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setUseCaches(false);
+    }
+
+    private String read(URLConnection connection, Charset charset) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return CharStreams.toString(new InputStreamReader(in, charset));
+        }
+    }
+
+    private String readCached(Path content, Charset charset) throws IOException {
+        return Blueprints.read(content, charset);
+    }
+
+    private void write(URL url, URLConnection connection, Path content, Path metadataFile, String body,
+            Charset charset) {
+        Properties metadata = new Properties();
+        metadata.setProperty(URL_KEY, url.toString());
+        metadata.setProperty(FETCHED_KEY, Long.toString(System.currentTimeMillis()));
+        if (connection.getHeaderField("ETag") != null) {
+            metadata.setProperty(ETAG_KEY, connection.getHeaderField("ETag"));
+        }
+        if (connection.getHeaderField("Last-Modified") != null) {
+            metadata.setProperty(LAST_MODIFIED_KEY, connection.getHeaderField("Last-Modified"));
+        }
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, content.getFileName().toString(), ".tmp");
+            Files.write(temp, body.getBytes(charset));
+            Files.move(temp, content, StandardCopyOption.REPLACE_EXISTING);
+            writeMetadata(metadataFile, metadata);
+        } catch (IOException e) {
+            log.debug("Unable to cache " + url + " in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    @Nullable
+    private Properties readMetadata(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        Properties metadata = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            metadata.load(in);
+            return metadata;
+        } catch (IOException e) {
+            log.debug("Ignoring unreadable cache metadata " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeMetadata(Path file, Properties metadata) throws IOException {
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            metadata.store(out, null);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+}
@@ -0,0 +1,113 @@
+package io.brooklyn.maven.blueprint;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.util.yaml.Yamls;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * The outcome of checking a blueprint locally, before it is given to a server.
+ * <p/>
+ * A blueprint is in error if it is not YAML, if it is not a map, if it has neither
+ * <code>services</code> nor a top-level <code>type</code>, or if any of its services has
+ * no <code>type</code>. The checks are deliberately loose: a blueprint that passes them
+ * may still be rejected by the server, but one that fails them certainly would be.
+ * A blueprint with no location is only warned about, since the server may supply one.
+ */
+public class BlueprintValidation {
+
+    private final List<String> errors;
+    private final List<String> warnings;
+
+    private BlueprintValidation(List<String> errors, List<String> warnings) {
+        this.errors = ImmutableList.copyOf(errors);
+        this.warnings = ImmutableList.copyOf(warnings);
+    }
+
+    public static BlueprintValidation of(String blueprint) {
+        List<String> errors = Lists.newArrayList();
+        List<String> warnings = Lists.newArrayList();
+        List<Object> documents;
+        try {
+            documents = Lists.newArrayList(Yamls.parseAll(blueprint));
+        } catch (Exception e) {
+            errors.add("Blueprint is not valid YAML: " + e.getMessage());
+            return new BlueprintValidation(errors, warnings);
+        }
+        documents.removeAll(Collections.singleton(null));
+        if (documents.isEmpty()) {
+            errors.add("Blueprint is empty");
+        } else if (!(documents.get(0) instanceof Map)) {
+            errors.add("Blueprint should be a map but is " + describe(documents.get(0)));
+        } else {
+            checkApplication((Map<?, ?>) documents.get(0), errors, warnings);
+        }
+        return new BlueprintValidation(errors, warnings);
+    }
+
+    private static void checkApplication(Map<?, ?> application, List<String> errors, List<String> warnings) {
+        boolean hasType = hasType(application);
+        boolean hasLocation = hasLocation(application);
+        Object services = application.get("services");
+        if (services == null) {
+            if (!hasType) {
+                errors.add("Blueprint has neither services nor a type");
+            }
+        } else if (!(services instanceof List) || ((List<?>) services).isEmpty()) {
+            errors.add("Blueprint's services should be a non-empty list but are " + describe(services));
+        } else {
+            boolean everyServiceHasLocation = true;
+            List<?> list = (List<?>) services;
+            for (int i = 0; i < list.size(); i++) {
+                Object service = list.get(i);
+                if (!(service instanceof Map)) {
+                    errors.add("Service " + (i + 1) + " should be a map but is " + describe(service));
+                } else {
+                    if (!hasType((Map<?, ?>) service)) {
+                        errors.add("Service " + (i + 1) + " has no type");
+                    }
+                    everyServiceHasLocation &= hasLocation((Map<?, ?>) service);
+                }
+            }
+            hasLocation |= everyServiceHasLocation;
+        }
+        if (!hasLocation) {
+            warnings.add("Blueprint has no location; the server must supply one");
+        }
+    }
+
+    private static boolean hasType(Map<?, ?> map) {
+        return map.get("type") != null || map.get("serviceType") != null;
+    }
+
+    private static boolean hasLocation(Map<?, ?> map) {
+        return map.get("location") != null || map.get("locations") != null;
+    }
+
+    private static String describe(Object value) {
+        if (value instanceof List) {
+            return ((List<?>) value).isEmpty() ? "an empty list" : "a list";
+        }
+        return value instanceof String ? "a string" : String.valueOf(value);
+    }
+
+    /** @return true if the blueprint has no errors. */
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    /** @return Problems that mean the server would reject the blueprint. */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /** @return Problems that may mean the server would reject the blueprint. */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+}
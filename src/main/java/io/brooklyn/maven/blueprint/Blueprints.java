@@ -0,0 +1,78 @@
+package io.brooklyn.maven.blueprint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads and describes blueprints.
+ */
+public class Blueprints {
+
+    /** Files at least this large are memory-mapped rather than read onto the heap. */
+    static final long MAP_THRESHOLD = 1024 * 1024;
+    /** The number of characters of a blueprint included in {@link #summarise summaries}. */
+    static final int SUMMARY_LENGTH = 2048;
+    /** Matches property references like <code>${brooklyn.port}</code>. */
+    private static final Pattern PROPERTY_REFERENCE = Pattern.compile("\\$\\{([^}$\\s]+)\\}");
+
+    private Blueprints() {}
+
+    /**
+     * Reads the given file in a single pass, decoding it with the given charset. The content
+     * is returned exactly, including line endings. Malformed input is replaced rather than
+     * rejected.
+     */
+    public static String read(Path file, Charset charset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer bytes;
+            if (size >= MAP_THRESHOLD) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+            }
+            return charset.decode(bytes).toString();
+        }
+    }
+
+    /**
+     * @return The blueprint if it is short, otherwise its beginning and a note of its length.
+     */
+    public static String summarise(String blueprint) {
+        if (blueprint.length() <= SUMMARY_LENGTH) {
+            return blueprint;
+        }
+        int lines = 1;
+        for (int i = 0; i < blueprint.length(); i++) {
+            if (blueprint.charAt(i) == '\n') lines++;
+        }
+        return blueprint.substring(0, SUMMARY_LENGTH) + "\n[... " + (blueprint.length() - SUMMARY_LENGTH) +
+                " more characters, " + blueprint.length() + " characters and " + lines + " lines in total]";
+    }
+
+    /**
+     * Replaces references like <code>${name}</code> in the blueprint with the value of the
+     * named property. References to properties that are not set are left alone, so shell
+     * variables in a blueprint's commands survive unless they coincide with a property.
+     * Values are not themselves interpolated.
+     */
+    public static String interpolate(String blueprint, Properties properties) {
+        Matcher matcher = PROPERTY_REFERENCE.matcher(blueprint);
+        StringBuffer result = new StringBuffer(blueprint.length());
+        while (matcher.find()) {
+            String value = properties.getProperty(matcher.group(1));
+            matcher.appendReplacement(result, Matcher.quoteReplacement(value != null ? value : matcher.group()));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+}
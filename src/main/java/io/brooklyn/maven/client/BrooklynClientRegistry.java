@@ -0,0 +1,28 @@
+package io.brooklyn.maven.client;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.rest.client.BrooklynApi;
+
+/**
+ * Hands out clients for Brooklyn servers. Goals and the forker share one client per
+ * server and set of credentials, and all clients share a pool of keep-alive connections.
+ */
+public interface BrooklynClientRegistry {
+
+    /**
+     * @return A client for the server, created if this is the first request for the
+     * given server and credentials.
+     */
+    BrooklynApi get(URL server, @Nullable String username, @Nullable String password);
+
+    /**
+     * Configures the shared connection pool. Applies to clients already handed out.
+     * @param maxConnections The maximum number of connections to open to any one server.
+     * @param idleTimeout How long connections may be idle before they are closed.
+     */
+    void configure(int maxConnections, long idleTimeout, TimeUnit unit);
+
+}
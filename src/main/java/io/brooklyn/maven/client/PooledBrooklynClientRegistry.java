@@ -0,0 +1,158 @@
+package io.brooklyn.maven.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.net.URL;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.brooklyn.rest.client.BrooklynApi;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.logging.Logger;
+import org.jboss.resteasy.client.core.executors.ApacheHttpClient4Executor;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.brooklyn.maven.metrics.BrooklynMetrics;
+
+/**
+ * A {@link BrooklynClientRegistry} whose clients share a single pooled connection manager.
+ * Idle connections are closed by a daemon thread. Requests are recorded in the
+ * build's {@link BrooklynMetrics} when they are available.
+ */
+// RESTEasy's deprecated client executor is the only hook into BrooklynApi's requests.
+@SuppressWarnings("deprecation")
+@Singleton
+@Component(
+        role = BrooklynClientRegistry.class,
+        hint = "default")
+public class PooledBrooklynClientRegistry implements BrooklynClientRegistry {
+
+    static final int DEFAULT_MAX_CONNECTIONS = 20;
+    static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 30;
+    /** Matches the timeouts of clients created by {@link BrooklynApi#BrooklynApi(URL)}. */
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final ConcurrentMap<ClientKey, BrooklynApi> clients = Maps.newConcurrentMap();
+    private final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    private final RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+            .setConnectionRequestTimeout(CONNECT_TIMEOUT_MILLIS)
+            .build();
+
+    private Logger logger;
+    private BrooklynMetrics metrics;
+    private IdleConnectionEvictor evictor;
+    private long idleTimeoutMillis;
+
+    public PooledBrooklynClientRegistry() {
+        configure(DEFAULT_MAX_CONNECTIONS, DEFAULT_IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Inject
+    public void setLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Inject
+    public void setMetrics(BrooklynMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public synchronized void configure(int maxConnections, long idleTimeout, TimeUnit unit) {
+        checkArgument(maxConnections > 0, "maxConnections must be positive");
+        checkArgument(idleTimeout > 0, "idleTimeout must be positive");
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setMaxTotal(Math.max(maxConnections, connectionManager.getMaxTotal()));
+        long millis = unit.toMillis(idleTimeout);
+        if (millis != idleTimeoutMillis) {
+            if (evictor != null) {
+                evictor.shutdown();
+            }
+            idleTimeoutMillis = millis;
+            evictor = new IdleConnectionEvictor(connectionManager,
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("brooklyn-idle-connection-evictor-%d").build(),
+                    Math.max(millis / 2, 1), TimeUnit.MILLISECONDS,
+                    millis, TimeUnit.MILLISECONDS);
+            evictor.start();
+        }
+    }
+
+    @Override
+    public BrooklynApi get(URL server, @Nullable String username, @Nullable String password) {
+        ClientKey key = new ClientKey(server.toString(), username, password);
+        BrooklynApi client = clients.get(key);
+        if (client == null) {
+            BrooklynApi created = newClient(server, username, password);
+            client = clients.putIfAbsent(key, created);
+            if (client == null) {
+                client = created;
+                if (logger != null) {
+                    logger.debug("Created client for " + server + (username != null ? " as " + username : ""));
+                }
+            }
+        }
+        return client;
+    }
+
+    private BrooklynApi newClient(URL server, @Nullable String username, @Nullable String password) {
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                // Stops clients closing the manager that they all share.
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(requestConfig);
+        if (username != null && password != null) {
+            CredentialsProvider credentials = new BasicCredentialsProvider();
+            credentials.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
+            builder.setDefaultCredentialsProvider(credentials);
+        }
+        org.jboss.resteasy.client.ClientExecutor executor = new ApacheHttpClient4Executor(builder.build());
+        if (metrics != null) {
+            executor = new TimingClientExecutor(executor, metrics);
+        }
+        return new BrooklynApi(server, executor);
+    }
+
+    private static class ClientKey {
+        final String server;
+        final String username;
+        final String password;
+
+        ClientKey(String server, String username, String password) {
+            this.server = server;
+            this.username = username;
+            this.password = password;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ClientKey)) return false;
+            ClientKey that = (ClientKey) o;
+            return Objects.equal(server, that.server)
+                    && Objects.equal(username, that.username)
+                    && Objects.equal(password, that.password);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(server, username, password);
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package io.brooklyn.maven.client;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import javax.ws.rs.core.UriBuilder;
+
+import io.brooklyn.maven.metrics.BrooklynMetrics;
+
+/**
+ * Records the latency of every request made through a delegate executor.
+ */
+// RESTEasy's deprecated client executor is the only hook into BrooklynApi's requests.
+// Its types are not imported because Java 7 and 8 warn on deprecated imports regardless.
+@SuppressWarnings("deprecation")
+class TimingClientExecutor implements org.jboss.resteasy.client.ClientExecutor {
+
+    /** Matches the IDs in paths like /v1/applications/{id}/entities/{id}. */
+    private static final Pattern ID_SEGMENT = Pattern.compile("(/(?:applications|entities|activities|locations|policies))/[^/]+");
+
+    private final org.jboss.resteasy.client.ClientExecutor delegate;
+    private final BrooklynMetrics metrics;
+
+    TimingClientExecutor(org.jboss.resteasy.client.ClientExecutor delegate, BrooklynMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public org.jboss.resteasy.client.ClientRequest createRequest(String uriTemplate) {
+        return new org.jboss.resteasy.client.ClientRequest(uriTemplate, this);
+    }
+
+    @Override
+    public org.jboss.resteasy.client.ClientRequest createRequest(UriBuilder uriBuilder) {
+        return new org.jboss.resteasy.client.ClientRequest(uriBuilder, this);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public org.jboss.resteasy.client.ClientResponse execute(org.jboss.resteasy.client.ClientRequest request) throws Exception {
+        long start = System.nanoTime();
+        int status = -1;
+        try {
+            org.jboss.resteasy.client.ClientResponse response = delegate.execute(request);
+            status = response.getStatus();
+            return response;
+        } finally {
+            metrics.recordCall(request.getHttpMethod(), pathOf(request), status,
+                    System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+
+    private static String pathOf(org.jboss.resteasy.client.ClientRequest request) {
+        try {
+            String path = URI.create(request.getUri()).getRawPath();
+            return ID_SEGMENT.matcher(path).replaceAll("$1/{id}");
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+
+}
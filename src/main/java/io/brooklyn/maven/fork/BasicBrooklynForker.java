@@ -2,30 +2,59 @@ package io.brooklyn.maven.fork;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.brooklyn.rest.client.BrooklynApi;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.net.Urls;
+import org.apache.brooklyn.util.time.Duration;
 import org.apache.maven.plugin.MojoExecutionException;
-import org.apache.maven.shared.utils.cli.CommandLineCallable;
-import org.apache.maven.shared.utils.cli.CommandLineUtils;
 import org.apache.maven.shared.utils.cli.Commandline;
 import org.apache.maven.shared.utils.cli.DefaultConsumer;
 import org.apache.maven.shared.utils.cli.StreamConsumer;
+import org.apache.maven.shared.utils.cli.StreamPumper;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.logging.Logger;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.io.Files;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Resources;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.brooklyn.maven.client.BrooklynClientRegistry;
+import io.brooklyn.maven.metrics.BrooklynMetrics;
+import io.brooklyn.maven.poll.PollStrategy;
 
 @Singleton
 @Component(
@@ -33,103 +62,481 @@ import com.google.common.io.Resources;
         hint = "default")
 public class BasicBrooklynForker implements BrooklynForker {
 
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private static final String PATHING_JAR = "classpath.jar";
+    /** The subdirectory of the work directory holding jars of directories on the classpath. */
+    private static final String DIRECTORY_JARS = "jars";
+    private static final String JAVA_EXECUTABLE = "java";
+    /**
+     * The time {@link #cleanUp()} allows for shutdown requests beyond the servers' exit and
+     * terminate timeouts before it destroys any servers remaining.
+     */
+    private static final Duration CLEAN_UP_ALLOWANCE = Duration.seconds(15);
+
+    /**
+     * Waits on forked processes and checks that they have started. Shared by every project in
+     * the build and never shut down: threads are daemons and exit when idle.
+     */
+    private final ListeningExecutorService executorService = MoreExecutors.listeningDecorator(
+            Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                    .setNameFormat("brooklyn-forker-%d")
+                    .setDaemon(true)
+                    .build()));
     private final Map<String, ServerRecord> forks = Maps.newHashMap();
+    /** Servers that may be shared between projects, keyed by {@link #poolKey}. */
+    private final Map<String, ServerRecord> pool = Maps.newHashMap();
+    /** Servers being forked to be shared, keyed by {@link #poolKey}, so that concurrent projects fork only one. */
+    private final Map<String, SettableFuture<ForkedServer>> forkingPool = Maps.newHashMap();
     private final Object forksLock = new Object[0];
 
     private Logger logger;
+    private BrooklynClientRegistry clients;
+    private BrooklynMetrics metrics;
+    private ClassDataSharing classDataSharing;
 
     @Inject
     public void setLogger(Logger logger) {
         this.logger = logger;
     }
 
+    @Inject
+    public void setClients(BrooklynClientRegistry clients) {
+        this.clients = clients;
+    }
+
+    @Inject
+    public void setMetrics(BrooklynMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Stops every forked server concurrently.
+     * @see #cleanUp(List)
+     */
     @Override
     public void cleanUp() {
-        // Could make this asynchronous but expect it will be rare to wait on more than one server.
+        final List<ServerRecord> records;
         synchronized (forksLock) {
-            for (Iterator<ServerRecord> it = forks.values().iterator(); it.hasNext(); ) {
-                ServerRecord entry = it.next();
-                try {
-                    doCleanUp(entry.shutdownOptions, entry);
-                } finally {
-                    it.remove();
+            records = ImmutableList.copyOf(forks.values());
+            forks.clear();
+            pool.clear();
+        }
+        cleanUp(records);
+    }
+
+    /**
+     * Stops the servers forked for the given project concurrently, leaving pooled servers
+     * and the servers of other projects running.
+     * @see #cleanUp(List)
+     */
+    @Override
+    public void cleanUpProject(String project) {
+        final List<ServerRecord> records = Lists.newArrayList();
+        synchronized (forksLock) {
+            Iterator<ServerRecord> iterator = forks.values().iterator();
+            while (iterator.hasNext()) {
+                ServerRecord record = iterator.next();
+                if (record.poolKey == null && Objects.equal(project, record.project)) {
+                    records.add(record);
+                    iterator.remove();
                 }
             }
         }
-        executorService.shutdown();
+        if (records.isEmpty()) {
+            logger.debug("No servers to stop for " + project);
+        }
+        cleanUp(records);
+    }
+
+    /**
+     * Stops the given servers concurrently. Servers still running when the slowest
+     * server's exit and terminate timeouts plus {@link #CLEAN_UP_ALLOWANCE} have passed
+     * are destroyed.
+     */
+    private void cleanUp(List<ServerRecord> records) {
+        for (ServerRecord record : records) {
+            record.readiness.cancel(true);
+        }
+        if (!records.isEmpty()) {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            ExecutorService shutdowns = Executors.newFixedThreadPool(records.size());
+            List<Future<String>> results = Lists.newArrayList();
+            try {
+                for (final ServerRecord record : records) {
+                    results.add(shutdowns.submit(new Callable<String>() {
+                        @Override
+                        public String call() {
+                            return doCleanUp(record.shutdownOptions, record);
+                        }
+                    }));
+                }
+                Duration limit = Duration.ZERO;
+                for (ServerRecord record : records) {
+                    ShutdownOptions options = record.shutdownOptions;
+                    limit = Duration.max(limit, options.exitTimeout().add(options.terminateTimeout()));
+                }
+                limit = limit.add(CLEAN_UP_ALLOWANCE);
+                List<String> summary = Lists.newArrayList();
+                long deadline = System.nanoTime() + limit.toNanoseconds();
+                for (int i = 0; i < records.size(); i++) {
+                    summary.add(awaitCleanUp(records.get(i), results.get(i), limit, deadline - System.nanoTime()));
+                }
+                logger.info("Stopped " + records.size() + " server(s) in " +
+                        Duration.millis(stopwatch.elapsed(TimeUnit.MILLISECONDS)) + ":\n  " +
+                        Joiner.on("\n  ").join(summary));
+            } finally {
+                shutdowns.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Waits up to remainingNanos for the given server to be cleaned up and destroys it otherwise.
+     * @return A description of the outcome.
+     */
+    private String awaitCleanUp(ServerRecord record, Future<String> result, Duration limit, long remainingNanos) {
+        String server = record.shutdownOptions.server();
+        Duration terminateTimeout = record.shutdownOptions.terminateTimeout();
+        try {
+            return result.get(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Server at " + server + " did not stop within " + limit + ", destroying it");
+            result.cancel(true);
+            return server + ": " + destroy(record, terminateTimeout) + " at the clean up deadline";
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.warn("Error stopping server at " + server + ", destroying it", cause);
+            return server + ": " + destroy(record, terminateTimeout) + " after " + cause.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Exceptions.propagate(e);
+        }
     }
 
     @Override
     public void cleanUp(ShutdownOptions options) {
+        final ServerRecord record;
+        synchronized (forksLock) {
+            record = forks.remove(options.server());
+            if (record != null && record.poolKey != null) {
+                pool.remove(record.poolKey);
+            }
+        }
+        if (record != null) {
+            record.readiness.cancel(true);
+        }
+        // Not under the lock: other projects may fork or look up servers meanwhile.
+        logger.info("Stopped " + doCleanUp(options, record));
+    }
+
+    @Override
+    public boolean isPooled(String server) {
         synchronized (forksLock) {
-            ServerRecord record = forks.remove(options.server().toString());
-            doCleanUp(options, record);
+            ServerRecord record = forks.get(server);
+            return record != null && record.poolKey != null;
         }
     }
 
-    private void doCleanUp(ShutdownOptions options, ServerRecord record) {
+    @Override
+    public ListenableFuture<URL> getReadiness(String server) {
+        synchronized (forksLock) {
+            ServerRecord record = forks.get(server);
+            return record != null ? record.readiness : null;
+        }
+    }
+
+    /**
+     * Requests that the server shut down and waits up to {@link ShutdownOptions#exitTimeout} for its
+     * process to exit. Destroys the process if the request fails or the process does not exit in time.
+     * @return A description of the outcome.
+     */
+    private String doCleanUp(ShutdownOptions options, ServerRecord record) {
         logger.info("Stopping server at " + options.server());
         logger.debug("Stop options: " +
                 "timeout=" + options.timeout() +
                 ", stopApps=" + options.stopAllApplications() +
                 ", force=" + options.forceShutdownOnError());
-        BrooklynApi api;
-        if (options.username() == null || options.password() == null) {
-            api = BrooklynApi.newInstance(options.server().toString());
-        } else {
-            api = BrooklynApi.newInstance(options.server().toString(), options.username(), options.password());
+        BrooklynApi api = getApi(options.server(), options.username(), options.password());
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        StringBuilder outcome = new StringBuilder(options.server()).append(": ");
+        try {
+            api.getServerApi().shutdown(
+                    options.stopAllApplications(),
+                    options.forceShutdownOnError(),
+                    options.timeout(),
+                    options.timeout(),
+                    options.timeout(),
+                    null /* argument deprecated */);
+            outcome.append("shutdown requested in ").append(elapsed(stopwatch));
+        } catch (RuntimeException e) {
+            // Cannot escalate without the process.
+            if (record == null) throw e;
+            logger.warn("Error requesting shutdown of server at " + options.server() + ", destroying it", e);
+            return outcome.append(destroy(record, options.terminateTimeout()))
+                    .append(" after shutdown request failed: ").append(e.getMessage())
+                    .toString();
         }
-        api.getServerApi().shutdown(
-                options.stopAllApplications(),
-                options.forceShutdownOnError(),
-                options.timeout(),
-                options.timeout(),
-                options.timeout(),
-                null /* argument deprecated */);
+        recordPhase(options.server(), "shutdown", stopwatch);
 
         // Could be null if the start-server goal was not used.
         if (record != null) {
-            try {
-                // Waits for the forked process to exit.
-                logger.debug("Waiting for forked process to complete");
-                // Status is -1 if it timed out.
-                int status = record.forkedServer.getExitCode(30, TimeUnit.SECONDS);
-                String statusMessage = status >= 0 ? " with exit status " + status : ", unable to determine exit status";
-                logger.debug("Forked process complete" + statusMessage);
-            } catch (Exception e) {
-                logger.warn("Exception waiting for server at " + options.server() + " to exit", e);
+            // Waits for the forked process to exit.
+            logger.debug("Waiting for forked process to complete");
+            // Status is -1 if it timed out.
+            int status = record.forkedServer.getExitCode(options.exitTimeout().toMilliseconds(), TimeUnit.MILLISECONDS);
+            if (status >= 0) {
+                logger.debug("Forked process complete with exit status " + status);
+                outcome.append(", exited in ").append(elapsed(stopwatch)).append(" with status ").append(status);
+                recordPhase(options.server(), "process-exit", stopwatch);
+            } else {
+                logger.warn("Server at " + options.server() + " did not exit within " + options.exitTimeout() +
+                        ", destroying it");
+                outcome.append(", ").append(destroy(record, options.terminateTimeout()))
+                        .append(" after waiting ").append(elapsed(stopwatch)).append(" to exit");
             }
         } else {
             logger.debug("Cannot wait for server to exit: no callable context.");
         }
+        return outcome.toString();
+    }
+
+    private BrooklynApi getApi(String server, String username, String password) {
+        if (clients != null) {
+            return clients.get(Urls.toUrl(server), username, password);
+        } else if (username == null || password == null) {
+            return BrooklynApi.newInstance(server);
+        } else {
+            return BrooklynApi.newInstance(server, username, password);
+        }
+    }
+
+    /**
+     * Waits for the given server to be up, polling its REST API with increasing delays up to
+     * a second. If the server's output is watched for its ready pattern each delay ends early
+     * when the pattern is seen, so the pattern can only shorten the wait and a server whose
+     * output never matches is polled as often as one that is not watched.
+     * Runs until the server is up or its process exits, or until the check is cancelled when
+     * the server is stopped.
+     */
+    private Callable<URL> readinessCheck(final ForkedServer forkedServer, final ForkOptions options) {
+        return new Callable<URL>() {
+            @Override
+            public URL call() throws Exception {
+                URL url = forkedServer.getServer();
+                BrooklynApi api = getApi(url.toString(), options.username(), options.password());
+                Stopwatch stopwatch = Stopwatch.createStarted();
+                boolean logged = false;
+                for (int i = 0; ; i++) {
+                    long delay = PollStrategy.EXPONENTIAL.delay(i, Duration.ONE_SECOND).toMilliseconds();
+                    if (forkedServer.isMonitoringOutput() && !logged) {
+                        logged = forkedServer.awaitStartedOrExited(delay, TimeUnit.MILLISECONDS);
+                        if (logged) {
+                            logger.debug("Server at " + url + " logged that it had started after " + elapsed(stopwatch));
+                            recordPhase(url.toString(), "jvm-up", stopwatch);
+                        }
+                    } else {
+                        Thread.sleep(delay);
+                    }
+                    // The order of these is important - if forkedServer.hasExited() then api.isUp()
+                    // will throw an exception! The exception is thrown by RESTEasy.
+                    if (forkedServer.hasExited()) {
+                        throw new IllegalStateException("Forked server at " + url +
+                                " exited unexpectedly (exit code " + forkedServer.getExitCode() + ")");
+                    } else if (isUp(api)) {
+                        if (forkedServer.isMonitoringOutput() && !logged) {
+                            logger.debug("Did not see output matching " + options.readyPattern() + " from server at " + url);
+                        }
+                        logger.debug("Server at " + url + " up after " + elapsed(stopwatch));
+                        recordPhase(url.toString(), "rest-up", stopwatch);
+                        return url;
+                    }
+                }
+            }
+        };
+    }
+
+    private boolean isUp(BrooklynApi api) {
+        try {
+            return api.getServerApi().isUp();
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            return false;
+        }
+    }
+
+    /**
+     * Terminates then kills the given server's process.
+     * @return A description of how the process was stopped.
+     */
+    private String destroy(ServerRecord record, Duration terminateTimeout) {
+        ForkedServer.Destruction destruction = record.forkedServer.destroy(
+                terminateTimeout.toMilliseconds(), TimeUnit.MILLISECONDS);
+        switch (destruction) {
+            case TERMINATED:
+                return "terminated";
+            case KILLED:
+                return "killed after " + terminateTimeout;
+            case EXITED:
+                return "exited";
+            default:
+                return "destroyed";
+        }
+    }
+
+    private static String elapsed(Stopwatch stopwatch) {
+        return Duration.millis(stopwatch.elapsed(TimeUnit.MILLISECONDS)).toString();
+    }
+
+    private void recordPhase(String server, String phase, Stopwatch stopwatch) {
+        if (metrics != null) {
+            metrics.recordPhase("server " + server, phase, stopwatch.elapsed(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
-    public ForkedServer execute(ForkOptions options) throws MojoExecutionException {
+    public ForkedServer execute(final ForkOptions options) throws MojoExecutionException {
+        final String poolKey = options.reuseServer() ? poolKey(options) : null;
+        if (poolKey == null) {
+            return fork(options, null);
+        }
+        final SettableFuture<ForkedServer> forking = SettableFuture.create();
+        final ListenableFuture<ForkedServer> pending;
+        synchronized (forksLock) {
+            ServerRecord pooled = pool.get(poolKey);
+            if (pooled != null && !pooled.forkedServer.hasExited()) {
+                logger.info("Reusing server at " + pooled.forkedServer.getServer() +
+                        " that was forked earlier in the build");
+                return pooled.forkedServer;
+            } else if (pooled != null) {
+                logger.debug("Pooled server at " + pooled.forkedServer.getServer() + " has exited");
+                pool.remove(poolKey);
+                forks.remove(pooled.forkedServer.getServer().toString());
+            }
+            pending = forkingPool.get(poolKey);
+            if (pending == null) {
+                forkingPool.put(poolKey, forking);
+            }
+        }
+        if (pending != null) {
+            // Another project is forking a server this project can share.
+            try {
+                ForkedServer server = pending.get();
+                logger.info("Reusing server at " + server.getServer() + " that was forked for another project");
+                return server;
+            } catch (ExecutionException e) {
+                throw new MojoExecutionException("Error forking shared server", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Exceptions.propagate(e);
+            }
+        }
+        try {
+            ForkedServer server = fork(options, poolKey);
+            forking.set(server);
+            return server;
+        } catch (MojoExecutionException | RuntimeException e) {
+            forking.setException(e);
+            throw e;
+        } finally {
+            synchronized (forksLock) {
+                forkingPool.remove(poolKey);
+            }
+        }
+    }
+
+    /**
+     * Forks a server and records it, in the pool too if poolKey is given.
+     */
+    private ForkedServer fork(final ForkOptions options, @Nullable String poolKey) throws MojoExecutionException {
         Commandline cl = buildCommandLine(options);
-        // DefaultConsumer simply calls System.out.println.
-        StreamConsumer sysout = new DefaultConsumer();
-        StreamConsumer syserr = sysout;
         logger.debug("Executing: " + cl);
         try {
             // TODO: should inject whether server is http or https.
             final URL serverUrl = new URL("http://" + options.bindAddress() + ":" + options.bindPort());
-            // First null: no stdin. Second: no runnable after termination.
-            // Zero: wait forever for termination.
-            final CommandLineCallable callable = CommandLineUtils.executeCommandLineAsCallable(
-                    cl, null, sysout, syserr, 0, null);
-            final Future<Integer> future = executorService.submit(callable);
-            final ForkedServer forkedServer = new ForkedServer(serverUrl, future);
+            StreamConsumer sysout;
+            final ServerLogWriter logWriter;
+            if (options.logDirectory() != null) {
+                logWriter = new ServerLogWriter(
+                        options.logDirectory().resolve("server-" + options.bindPort() + ".log"),
+                        options.logFileSize(), options.logFiles(), options.mirrorWarnings(), logger)
+                        .start();
+                logger.info("Writing output of server at " + serverUrl + " to " + logWriter.getFile());
+                sysout = logWriter;
+            } else {
+                // DefaultConsumer simply calls System.out.println.
+                logWriter = null;
+                sysout = new DefaultConsumer();
+            }
+            StartupMonitor startupMonitor = null;
+            if (options.readyPattern() != null) {
+                // Watch both streams: the server's logging may go to either.
+                startupMonitor = new StartupMonitor(Pattern.compile(options.readyPattern()), sysout);
+                sysout = startupMonitor;
+            }
+            final Runnable afterTermination = startupMonitor != null ? startupMonitor.exitListener() : null;
+            final Process process = cl.execute();
+            // No stdin.
+            process.getOutputStream().close();
+            final StreamPumper out = new StreamPumper(process.getInputStream(), sysout);
+            final StreamPumper err = new StreamPumper(process.getErrorStream(), sysout);
+            out.start();
+            err.start();
+            final ForkedProcess forkedProcess = new ForkedProcess(process, logger);
+            logger.info("Forked server at " + serverUrl + " as process " + forkedProcess.getPid());
+            // Stops the server if Maven exits before cleaning up.
+            final Thread shutdownHook = new Thread("brooklyn-server-shutdown-hook-" + options.bindPort()) {
+                @Override
+                public void run() {
+                    try {
+                        forkedProcess.destroy(options.terminateTimeout().toMilliseconds(), TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+            final Future<Integer> future = executorService.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    try {
+                        int status = process.waitFor();
+                        out.waitUntilDone();
+                        err.waitUntilDone();
+                        return status;
+                    } catch (InterruptedException e) {
+                        // Cancelled: the process will not be waited on again.
+                        process.destroy();
+                        throw e;
+                    } finally {
+                        removeShutdownHook(shutdownHook);
+                        out.close();
+                        err.close();
+                        if (afterTermination != null) {
+                            afterTermination.run();
+                        }
+                        if (logWriter != null) {
+                            logWriter.close();
+                        }
+                    }
+                }
+            });
+            final ForkedServer forkedServer = new ForkedServer(serverUrl, future, startupMonitor, forkedProcess);
 
             // Record flags so server can be killed cleanly later.
             final ShutdownOptions shutdownOptions = ShutdownOptions.builder()
                     .server(serverUrl)
                     .username(options.username())
                     .password(options.password())
+                    .exitTimeout(options.exitTimeout())
+                    .terminateTimeout(options.terminateTimeout())
                     .build();
+            final ListenableFuture<URL> readiness = executorService.submit(readinessCheck(forkedServer, options));
+            final ServerRecord record = new ServerRecord(shutdownOptions, forkedServer, readiness, options.project(),
+                    poolKey);
             synchronized (forksLock) {
-                forks.put(serverUrl.toString(), new ServerRecord(shutdownOptions, forkedServer));
+                forks.put(serverUrl.toString(), record);
+                if (poolKey != null) {
+                    pool.put(poolKey, record);
+                }
             }
             return forkedServer;
         } catch (Exception e) {
@@ -137,18 +544,51 @@ public class BasicBrooklynForker implements BrooklynForker {
         }
     }
 
-    private Commandline buildCommandLine(ForkOptions options) throws MojoExecutionException {
+    private static void removeShutdownHook(Thread hook) {
+        try {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException e) {
+            // The JVM is already shutting down.
+        }
+    }
+
+    @VisibleForTesting
+    Commandline buildCommandLine(ForkOptions options) throws MojoExecutionException {
         Commandline cl = new Commandline();
         cl.addSystemEnvironment();
         // todo: inject other environment variables
         cl.setWorkingDirectory(createOutputDirectory(options.workDir()));
         // todo: use same java version as maven?
-        cl.setExecutable("java");
+        cl.setExecutable(JAVA_EXECUTABLE);
         for (String javaOption : options.javaOptions()) {
             cl.createArg().setValue(javaOption);
         }
+        List<Path> classpath = ImmutableList.<Path>builder().add(confDirectory(options)).addAll(options.classpath()).build();
+        final boolean classDataSharing = options.classDataSharingDirectory() != null &&
+                getClassDataSharing().isSupported();
+        if (classDataSharing) {
+            // The JVM only archives classes loaded from jars, so the configuration directory
+            // is replaced by a system property and other directories by jars of their contents.
+            classpath = buildJarClasspath(options);
+            cl.createArg().setValue("-Dlogback.configurationFile=" + confDirectory(options).resolve("logback.xml"));
+        }
+        final String pathingJar = options.usePathingJar() ? buildPathingJar(options.workDir(), classpath) : null;
+        if (classDataSharing) {
+            List<Path> archived = pathingJar != null
+                    ? ImmutableList.<Path>builder().add(Paths.get(pathingJar)).addAll(classpath).build()
+                    : classpath;
+            List<String> cdsOptions = getClassDataSharing().javaOptions(
+                    options.classDataSharingDirectory(), archived, options.mainClass());
+            for (String cdsOption : cdsOptions) {
+                cl.createArg().setValue(cdsOption);
+            }
+        }
         cl.createArg().setValue("-classpath");
-        cl.createArg().setValue(buildClasspath(options));
+        if (pathingJar != null) {
+            cl.createArg().setValue(pathingJar);
+        } else {
+            cl.createArg().setValue(joinClasspath(classpath));
+        }
         cl.createArg().setValue(options.mainClass());
         cl.createArg().setValue(options.launchCommand());
         cl.createArg().setValue("--bindAddress");
@@ -158,44 +598,156 @@ public class BasicBrooklynForker implements BrooklynForker {
         for (String argument : options.additionalArguments()) {
             cl.createArg().setValue(argument);
         }
+        if (pathingJar != null) {
+            // Gives a comparison of the two modes.
+            int length = cl.toString().length();
+            int fullLength = length - pathingJar.length() + joinClasspath(classpath).length();
+            logger.info("Launching with a pathing jar: command line is " + length + " characters, " +
+                    "it would be " + fullLength + " with the full classpath");
+        } else {
+            logger.debug("Launching with the full classpath: command line is " + cl.toString().length() + " characters");
+        }
         return cl;
     }
 
+    private synchronized ClassDataSharing getClassDataSharing() {
+        if (classDataSharing == null) {
+            classDataSharing = new ClassDataSharing(JAVA_EXECUTABLE, logger);
+        }
+        return classDataSharing;
+    }
+
+    /**
+     * Writes a jar whose manifest refers to every entry of the classpath to the work directory.
+     * The jar is only rewritten when the classpath changes.
+     * @return The path to the jar.
+     */
+    private String buildPathingJar(Path workDir, List<Path> classpath) throws MojoExecutionException {
+        final Path jar = workDir.resolve(PATHING_JAR).toAbsolutePath();
+        try {
+            boolean written = PathingJar.write(jar, classpath);
+            logger.debug((written ? "Wrote " : "Reusing ") + "pathing jar " + jar + " for " + classpath.size() + " entries");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error writing pathing jar " + jar, e);
+        }
+        return jar.toString();
+    }
+
+    /**
+     * Replaces every directory on the classpath with a jar of its contents in the work
+     * directory. Each jar is only rewritten when the directory's contents change.
+     * Empty directories are dropped.
+     * @return The classpath, excluding the configuration directory.
+     */
+    private List<Path> buildJarClasspath(ForkOptions options) throws MojoExecutionException {
+        final Path jars = options.workDir().resolve(DIRECTORY_JARS).toAbsolutePath();
+        ImmutableList.Builder<Path> classpath = ImmutableList.builder();
+        for (Path path : options.classpath()) {
+            if (!Files.isDirectory(path)) {
+                classpath.add(path);
+                continue;
+            }
+            try {
+                if (isEmptyDirectory(path)) {
+                    continue;
+                }
+                Files.createDirectories(jars);
+                String name = path.getFileName() + "-" +
+                        Hashing.sha1().hashString(path.toAbsolutePath().toString(), Charsets.UTF_8).toString().substring(0, 8);
+                Path jar = jars.resolve(name + ".jar");
+                boolean written = DirectoryJar.write(jar, path);
+                logger.debug((written ? "Wrote " : "Reusing ") + "jar " + jar + " of " + path);
+                classpath.add(jar);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Error writing jar of " + path, e);
+            }
+        }
+        return classpath.build();
+    }
+
+    private static boolean isEmptyDirectory(Path directory) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            return !entries.iterator().hasNext();
+        }
+    }
+
     /**
-     * Creates and returns the path to a directory in the project's build directory.
+     * Creates and returns the path to a directory in the project's build directory. The
+     * directory may exist already, from an earlier build or fork. The logback configuration
+     * in it is replaced atomically and only if it has changed, so that a server starting
+     * concurrently never reads a partial file.
      */
     private String createOutputDirectory(Path workingDir) throws MojoExecutionException {
         Path confDir = workingDir.resolve("conf");
-        boolean createdOutputDir = confDir.toFile().mkdirs();
-        if (!createdOutputDir) {
-            throw new MojoExecutionException("Could not create configuration directory: " + confDir);
+        try {
+            Files.createDirectories(confDir);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not create configuration directory: " + confDir, e);
         }
+        Path logbackFile = confDir.resolve("logback.xml");
         try {
-            String logback = Resources.asCharSource(getClass().getResource("/logback.xml"), Charsets.UTF_8).read();
-            Files.write(logback, confDir.resolve("logback.xml").toFile(), Charsets.UTF_8);
+            byte[] logback = Resources.toByteArray(getClass().getResource("/logback.xml"));
+            if (!Files.isRegularFile(logbackFile) ||
+                    !Arrays.equals(logback, Files.readAllBytes(logbackFile))) {
+                Path temp = Files.createTempFile(confDir, "logback.xml", ".tmp");
+                try {
+                    Files.write(temp, logback);
+                    Files.move(temp, logbackFile, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
         } catch (IOException e) {
             throw new MojoExecutionException("Error writing logback configuration", e);
         }
         return workingDir.toString();
     }
 
-    private String buildClasspath(ForkOptions options) {
-        final String separator = System.getProperty("path.separator");
-        // Head of the classpath is the directory containing logback.xml
-        final Path conf = options.workDir().resolve("conf").toAbsolutePath();
-        final StringBuilder classpath = new StringBuilder(conf.toString());
+    /** The directory containing logback.xml. */
+    private static Path confDirectory(ForkOptions options) {
+        return options.workDir().resolve("conf").toAbsolutePath();
+    }
+
+    private static String joinClasspath(List<Path> classpath) {
+        return Joiner.on(System.getProperty("path.separator")).join(classpath);
+    }
+
+    /**
+     * Servers are compatible if they run the same code in the same way. The bind address
+     * and port are deliberately excluded: a reused server keeps its own.
+     */
+    private String poolKey(ForkOptions options) {
+        Hasher hasher = Hashing.sha1().newHasher();
         for (Path path : options.classpath()) {
-            classpath.append(separator).append(path);
+            hasher.putString(path.toString(), Charsets.UTF_8).putChar('\0');
+        }
+        hasher.putString(options.mainClass(), Charsets.UTF_8).putChar('\0')
+                .putString(options.launchCommand(), Charsets.UTF_8).putChar('\0');
+        for (String option : options.javaOptions()) {
+            hasher.putString(option, Charsets.UTF_8).putChar('\0');
+        }
+        for (String argument : options.additionalArguments()) {
+            hasher.putString(argument, Charsets.UTF_8).putChar('\0');
         }
-        return classpath.toString();
+        return hasher.hash().toString();
     }
 
     private static class ServerRecord {
         final ShutdownOptions shutdownOptions;
         final ForkedServer forkedServer;
-        private ServerRecord(ShutdownOptions shutdownOptions, ForkedServer forkedServer) {
+        final ListenableFuture<URL> readiness;
+        /** The project the server was forked for. */
+        final String project;
+        /** Non-null if the server may be reused by other projects. */
+        final String poolKey;
+        private ServerRecord(ShutdownOptions shutdownOptions, ForkedServer forkedServer, ListenableFuture<URL> readiness,
+                String project, String poolKey) {
             this.shutdownOptions = shutdownOptions;
             this.forkedServer = forkedServer;
+            this.readiness = readiness;
+            this.project = project;
+            this.poolKey = poolKey;
         }
     }
 
@@ -1,7 +1,12 @@
 package io.brooklyn.maven.fork;
 
+import java.net.URL;
+import javax.annotation.Nullable;
+
 import org.apache.maven.plugin.MojoExecutionException;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 public interface BrooklynForker {
 
     /**
@@ -11,11 +16,32 @@ public interface BrooklynForker {
      */
     ForkedServer execute(ForkOptions config) throws MojoExecutionException;
 
+    /**
+     * @return true if the server at the given URL was forked with {@link ForkOptions#reuseServer()}
+     *      and may be shared by other projects in the build.
+     */
+    boolean isPooled(String server);
+
+    /**
+     * @return A future that yields the server's URL once the server forked at the given URL
+     *      is up, or that fails if the server exits first. Null if the server was not forked
+     *      by this forker or has been stopped.
+     */
+    @Nullable
+    ListenableFuture<URL> getReadiness(String server);
+
     /**
      * Stop all forked Brooklyn processes.
      */
     void cleanUp();
 
+    /**
+     * Stop the Brooklyn processes forked for the given project. Servers that may be shared
+     * with other projects are left running.
+     * @see ForkOptions#project()
+     */
+    void cleanUpProject(@Nullable String project);
+
     /**
      * Stop a Brooklyn process.
      */
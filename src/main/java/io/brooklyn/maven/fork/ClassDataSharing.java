@@ -0,0 +1,178 @@
+package io.brooklyn.maven.fork;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+import org.apache.maven.shared.utils.cli.CommandLineUtils;
+import org.apache.maven.shared.utils.cli.Commandline;
+import org.apache.maven.shared.utils.cli.StreamConsumer;
+import org.codehaus.plexus.logging.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Chooses the options that make a forked JVM use an application class data sharing
+ * (AppCDS) archive. The first launch of a classpath writes an archive when the JVM
+ * exits and later launches map it, saving the time spent loading and verifying
+ * classes.
+ * <p/>
+ * Archives are named <code>&lt;classpath key&gt;-&lt;content key&gt;.jsa</code>. The
+ * classpath key is a hash of the classpath and main class. The content key is a hash
+ * of the version of Java and the size and modification time of every jar, which the
+ * JVM checks before mapping an archive. A new archive replaces those with the same
+ * classpath key; archives for other classpaths are left alone, so one directory may
+ * be shared by several projects.
+ * <p/>
+ * Requires Java 13 or later for dynamic archiving. Earlier versions run without an
+ * archive. The JVM refuses to archive classes when the classpath contains a directory
+ * that is not empty, so the classpath must consist of jars.
+ */
+class ClassDataSharing {
+
+    private static final int MINIMUM_JAVA_VERSION = 13;
+    private static final String ARCHIVE_SUFFIX = ".jsa";
+    private static final Pattern VERSION = Pattern.compile("version \"(\\d+)(?:\\.(\\d+))?");
+
+    private final String javaExecutable;
+    private final Logger logger;
+    /** The output of <code>java -version</code>. Determined once. */
+    private String versionOutput;
+
+    ClassDataSharing(String javaExecutable, Logger logger) {
+        this(javaExecutable, logger, null);
+    }
+
+    @VisibleForTesting
+    ClassDataSharing(String javaExecutable, Logger logger, @Nullable String versionOutput) {
+        this.javaExecutable = javaExecutable;
+        this.logger = logger;
+        this.versionOutput = versionOutput;
+    }
+
+    /**
+     * @return true if the forked Java can create and use archives.
+     */
+    boolean isSupported() {
+        int feature = featureVersion(versionOutput());
+        if (feature < MINIMUM_JAVA_VERSION) {
+            logger.info("Not using class data sharing: requires Java " + MINIMUM_JAVA_VERSION +
+                    " or later, forked Java is " + (feature > 0 ? feature : "unknown"));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param classpath The jars given to the forked JVM, including any pathing jar.
+     * @return Options for the forked JVM to use or create an archive for the given
+     *      classpath in archiveDirectory, or an empty list if archives are not supported.
+     */
+    List<String> javaOptions(Path archiveDirectory, List<Path> classpath, String mainClass) {
+        if (!isSupported()) {
+            return ImmutableList.of();
+        }
+        Path archive;
+        try {
+            String classpathKey = classpathKey(classpath, mainClass);
+            archive = archiveDirectory.resolve(classpathKey + "-" + contentKey(classpath) + ARCHIVE_SUFFIX)
+                    .toAbsolutePath();
+            if (Files.isRegularFile(archive) && Files.size(archive) > 0) {
+                logger.info("Using class data sharing archive " + archive);
+                return ImmutableList.of("-XX:SharedArchiveFile=" + archive);
+            }
+            Files.createDirectories(archiveDirectory);
+            deleteStaleArchives(archiveDirectory, classpathKey, archive);
+        } catch (IOException e) {
+            logger.warn("Not using class data sharing: error preparing " + archiveDirectory, e);
+            return ImmutableList.of();
+        }
+        logger.info("Creating class data sharing archive " + archive + " when the server exits");
+        return ImmutableList.of("-XX:ArchiveClassesAtExit=" + archive);
+    }
+
+    private static String classpathKey(List<Path> classpath, String mainClass) {
+        Hasher hasher = Hashing.sha1().newHasher();
+        for (Path path : classpath) {
+            hasher.putString(path.toAbsolutePath().toString(), Charsets.UTF_8).putChar(File.pathSeparatorChar);
+        }
+        return hasher.putString(mainClass, Charsets.UTF_8).hash().toString();
+    }
+
+    private String contentKey(List<Path> classpath) throws IOException {
+        Hasher hasher = Hashing.sha1().newHasher().putString(versionOutput(), Charsets.UTF_8);
+        for (Path path : classpath) {
+            if (Files.isRegularFile(path)) {
+                hasher.putLong(Files.size(path)).putLong(Files.getLastModifiedTime(path).toMillis());
+            } else {
+                hasher.putLong(-1);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Deletes archives for the same classpath made from different jars or by a different
+     * version of Java. The JVM would refuse to map them.
+     */
+    private void deleteStaleArchives(Path archiveDirectory, String classpathKey, Path current) throws IOException {
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(
+                archiveDirectory, classpathKey + "-*" + ARCHIVE_SUFFIX)) {
+            for (Path archive : archives) {
+                if (!archive.getFileName().equals(current.getFileName())) {
+                    logger.debug("Deleting stale class data sharing archive " + archive);
+                    Files.deleteIfExists(archive);
+                }
+            }
+        }
+    }
+
+    private synchronized String versionOutput() {
+        if (versionOutput == null) {
+            final StringBuilder output = new StringBuilder();
+            StreamConsumer consumer = new StreamConsumer() {
+                @Override
+                public void consumeLine(String line) {
+                    output.append(line).append('\n');
+                }
+            };
+            Commandline cl = new Commandline();
+            cl.setExecutable(javaExecutable);
+            cl.createArg().setValue("-version");
+            try {
+                CommandLineUtils.executeCommandLine(cl, consumer, consumer);
+            } catch (Exception e) {
+                logger.debug("Unable to determine version of " + javaExecutable, e);
+            }
+            versionOutput = output.toString();
+        }
+        return versionOutput;
+    }
+
+    /**
+     * @return The major version of Java given the output of <code>java -version</code>,
+     *      e.g. 8 for 1.8.0_92 and 17 for 17.0.1, or -1 if it cannot be determined.
+     */
+    static int featureVersion(String versionOutput) {
+        Matcher matcher = VERSION.matcher(versionOutput);
+        if (!matcher.find()) {
+            return -1;
+        }
+        int first = Integer.parseInt(matcher.group(1));
+        if (first == 1 && matcher.group(2) != null) {
+            return Integer.parseInt(matcher.group(2));
+        }
+        return first;
+    }
+
+}
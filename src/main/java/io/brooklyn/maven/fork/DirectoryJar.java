@@ -0,0 +1,129 @@
+package io.brooklyn.maven.fork;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Writes a jar containing the files in a directory, such as a project's output
+ * directory, so that the directory's classes can be loaded from a jar. The jar's
+ * manifest records a digest of the names, sizes and modification times of the files
+ * and the jar is only rewritten when the digest changes, leaving its own size and
+ * modification time unchanged otherwise.
+ */
+class DirectoryJar {
+
+    private static final Attributes.Name DIGEST = new Attributes.Name("Directory-Digest");
+
+    private DirectoryJar() {}
+
+    /**
+     * Writes a jar of the given directory unless the jar at the given path was written
+     * from the same files.
+     * @return true if the jar was (re)written.
+     */
+    static boolean write(Path jar, Path directory) throws IOException {
+        SortedMap<String, Path> entries = entries(directory);
+        String digest = digest(entries);
+        if (digest.equals(readDigest(jar))) {
+            return false;
+        }
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(DIGEST, digest);
+        // Write then move so a concurrent fork never sees a partial jar.
+        Path temp = Files.createTempFile(jar.toAbsolutePath().getParent(), "classes", ".jar.tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp);
+                    JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+                for (Map.Entry<String, Path> entry : entries.entrySet()) {
+                    JarEntry jarEntry = new JarEntry(entry.getKey());
+                    jarEntry.setTime(Files.getLastModifiedTime(entry.getValue()).toMillis());
+                    jarOut.putNextEntry(jarEntry);
+                    if (!entry.getKey().endsWith("/")) {
+                        Files.copy(entry.getValue(), jarOut);
+                    }
+                    jarOut.closeEntry();
+                }
+            }
+            Files.move(temp, jar, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    /**
+     * @return The directory's files and subdirectories keyed by their names in a jar.
+     *      Names of directories end with a slash.
+     */
+    private static SortedMap<String, Path> entries(final Path directory) throws IOException {
+        final SortedMap<String, Path> entries = Maps.newTreeMap();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(directory)) {
+                    entries.put(name(dir) + "/", dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // The jar has a manifest of its own.
+                if (attrs.isRegularFile() && !name(file).equals(JarFile.MANIFEST_NAME)) {
+                    entries.put(name(file), file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            private String name(Path path) {
+                return directory.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+            }
+        });
+        return entries;
+    }
+
+    private static String digest(Map<String, Path> entries) throws IOException {
+        Hasher hasher = Hashing.sha1().newHasher();
+        for (Map.Entry<String, Path> entry : entries.entrySet()) {
+            hasher.putString(entry.getKey(), Charsets.UTF_8)
+                    .putLong(Files.size(entry.getValue()))
+                    .putLong(Files.getLastModifiedTime(entry.getValue()).toMillis());
+        }
+        return hasher.hash().toString();
+    }
+
+    private static String readDigest(Path jar) {
+        if (!Files.isRegularFile(jar)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(jar);
+                JarInputStream jarIn = new JarInputStream(in)) {
+            Manifest manifest = jarIn.getManifest();
+            return manifest != null ? manifest.getMainAttributes().getValue(DIGEST) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+}
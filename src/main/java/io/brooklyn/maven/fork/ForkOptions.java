@@ -4,6 +4,8 @@ import java.nio.file.Path;
 import java.util.List;
 import javax.annotation.Nullable;
 
+import org.apache.brooklyn.util.time.Duration;
+
 import com.google.auto.value.AutoValue;
 
 @AutoValue
@@ -12,7 +14,14 @@ public abstract class ForkOptions {
     ForkOptions() {}
 
     public static Builder builder() {
-        return new AutoValue_ForkOptions.Builder();
+        return new AutoValue_ForkOptions.Builder()
+                .reuseServer(false)
+                .usePathingJar(false)
+                .logFileSize(10 * 1024 * 1024)
+                .logFiles(5)
+                .mirrorWarnings(false)
+                .exitTimeout(Duration.THIRTY_SECONDS)
+                .terminateTimeout(Duration.TEN_SECONDS);
     }
 
     // General process options
@@ -20,6 +29,34 @@ public abstract class ForkOptions {
     public abstract List<String> javaOptions();
     public abstract List<String> additionalArguments();
     public abstract List<Path> classpath();
+    /** Whether a running server forked with equivalent options may be returned instead of a new fork. */
+    public abstract boolean reuseServer();
+    /** Whether the classpath should be given to the process in the manifest of a jar. */
+    public abstract boolean usePathingJar();
+    /** The directory for class data sharing archives. Class data sharing is not used if null. */
+    @Nullable public abstract Path classDataSharingDirectory();
+    /**
+     * A regular expression matching a line the process writes to its output once it has started.
+     * Output is not watched if null.
+     */
+    @Nullable public abstract String readyPattern();
+    /**
+     * The directory to which the process's output is written. Output is printed to the
+     * console if null.
+     */
+    @Nullable public abstract Path logDirectory();
+    /** The approximate size in bytes after which log files are rotated. */
+    public abstract long logFileSize();
+    /** The number of log files kept, including the current file. */
+    public abstract int logFiles();
+    /** Whether warnings and errors in output written to {@link #logDirectory} should also be logged. */
+    public abstract boolean mirrorWarnings();
+    /** How long to wait for the process to exit after shutdown is requested before terminating it. */
+    public abstract Duration exitTimeout();
+    /** How long to wait for the process to exit after it is terminated before killing it. */
+    public abstract Duration terminateTimeout();
+    /** The ID of the project the process is forked for. */
+    @Nullable public abstract String project();
 
     // Brooklyn options
     public abstract String mainClass();
@@ -36,6 +73,17 @@ public abstract class ForkOptions {
         public abstract Builder workDir(Path dir);
         public abstract Builder additionalArguments(List<String> arguments);
         public abstract Builder classpath(List<Path> classpath);
+        public abstract Builder reuseServer(boolean reuse);
+        public abstract Builder usePathingJar(boolean usePathingJar);
+        public abstract Builder classDataSharingDirectory(@Nullable Path directory);
+        public abstract Builder readyPattern(@Nullable String pattern);
+        public abstract Builder logDirectory(@Nullable Path directory);
+        public abstract Builder logFileSize(long bytes);
+        public abstract Builder logFiles(int files);
+        public abstract Builder mirrorWarnings(boolean mirror);
+        public abstract Builder exitTimeout(Duration timeout);
+        public abstract Builder terminateTimeout(Duration timeout);
+        public abstract Builder project(@Nullable String project);
 
         // Brooklyn options
         public abstract Builder launchCommand(String command);
@@ -0,0 +1,182 @@
+package io.brooklyn.maven.fork;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+import org.codehaus.plexus.logging.Logger;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.io.CharStreams;
+
+/**
+ * The operating system process of a forked server.
+ * <p/>
+ * Supports stopping the process and its descendants with increasing force. Descendants
+ * are found with <code>pgrep</code> and signalled with <code>kill</code>, so are only
+ * reaped on Unix-like systems. Elsewhere, or if the process ID cannot be learned, the
+ * process is stopped with {@link Process#destroy()} alone.
+ */
+class ForkedProcess {
+
+    private static final long POLL_MILLIS = 50;
+    /** How long to wait for a killed process to go. */
+    private static final long KILL_WAIT_MILLIS = 5000;
+
+    private final Process process;
+    @Nullable
+    private final Integer pid;
+    private final long startTime;
+    private final Logger logger;
+
+    ForkedProcess(Process process, Logger logger) {
+        this.process = process;
+        this.pid = isWindows() ? null : pidOf(process);
+        this.startTime = System.currentTimeMillis();
+        this.logger = logger;
+    }
+
+    /** @return The process ID, or null if it is unknown. */
+    @Nullable
+    Integer getPid() {
+        return pid;
+    }
+
+    /** @return The time the process was started, in milliseconds since the epoch. */
+    long getStartTime() {
+        return startTime;
+    }
+
+    boolean isAlive() {
+        try {
+            process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Waits up to timeout for the process to exit.
+     * @return true if the process has exited.
+     */
+    boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (isAlive() && System.nanoTime() < deadline) {
+            Thread.sleep(POLL_MILLIS);
+        }
+        return !isAlive();
+    }
+
+    /**
+     * Asks the process and its descendants to exit, sending them SIGTERM on Unix, then kills
+     * them with SIGKILL if the process has not exited after terminateTimeout. Descendants
+     * are found first: once the process exits they are re-parented and cannot be found.
+     * @return true if the process exited without being killed.
+     */
+    boolean destroy(long terminateTimeout, TimeUnit unit) throws InterruptedException {
+        List<String> descendants = Lists.newArrayList();
+        if (pid != null) {
+            for (Integer descendant : descendants(pid)) {
+                descendants.add(descendant.toString());
+            }
+        }
+        signal("TERM", descendants);
+        process.destroy();
+        if (waitFor(terminateTimeout, unit)) {
+            return true;
+        }
+        logger.debug("Process " + pid + " did not exit within " + unit.toMillis(terminateTimeout) + "ms of SIGTERM");
+        signal("KILL", descendants);
+        process.destroy();
+        waitFor(KILL_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        return false;
+    }
+
+    /**
+     * Sends the given signal to the given processes and to this process. This process is
+     * only signalled while it has not been reaped, so its ID cannot have been reused.
+     */
+    private void signal(String signal, List<String> descendants) {
+        if (pid == null) {
+            return;
+        }
+        List<String> targets = Lists.newArrayList(descendants);
+        if (isAlive()) {
+            targets.add(pid.toString());
+        }
+        if (!targets.isEmpty()) {
+            logger.debug("Sending SIG" + signal + " to " + targets);
+            List<String> command = Lists.newArrayList("kill", "-" + signal);
+            command.addAll(targets);
+            run(command);
+        }
+    }
+
+    /** @return The descendants of the given process, deepest first. */
+    private List<Integer> descendants(int parent) {
+        List<Integer> descendants = Lists.newArrayList();
+        for (String child : Splitter.on('\n').trimResults().omitEmptyStrings()
+                .split(run(Lists.newArrayList("pgrep", "-P", Integer.toString(parent))))) {
+            try {
+                int childPid = Integer.parseInt(child);
+                descendants.addAll(descendants(childPid));
+                descendants.add(childPid);
+            } catch (NumberFormatException e) {
+                logger.debug("Ignoring unexpected output of pgrep: " + child);
+            }
+        }
+        return descendants;
+    }
+
+    /**
+     * Runs the given command and returns its output, or an empty string if the command fails.
+     */
+    private String run(List<String> command) {
+        try {
+            Process p = new ProcessBuilder(command).redirectErrorStream(true).start();
+            p.getOutputStream().close();
+            // Both commands exit promptly, closing their output.
+            String output = CharStreams.toString(new InputStreamReader(p.getInputStream(), Charsets.UTF_8));
+            p.waitFor();
+            return output;
+        } catch (IOException e) {
+            logger.debug("Failed to run " + command + ": " + e.getMessage());
+            return "";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        }
+    }
+
+    private static boolean isWindows() {
+        return System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+    }
+
+    /**
+     * Java 9 and later offer Process#pid. Earlier versions keep it in a private field.
+     */
+    @Nullable
+    private static Integer pidOf(Process process) {
+        try {
+            Method method = Process.class.getMethod("pid");
+            return ((Number) method.invoke(process)).intValue();
+        } catch (Exception e) {
+            // Fall through to the field.
+        }
+        try {
+            Field field = process.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            return field.getInt(process);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+}
@@ -1,20 +1,50 @@
 package io.brooklyn.maven.fork;
 
 import java.net.URL;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
 
 import org.apache.brooklyn.util.exceptions.Exceptions;
 
 public class ForkedServer {
 
+    /** How {@link #destroy} stopped the process. */
+    public enum Destruction {
+        /** The process had already exited. */
+        EXITED,
+        /** The process exited when asked to terminate. */
+        TERMINATED,
+        /** The process had to be killed. */
+        KILLED,
+        /** The process could not be reached and the thread waiting on it was interrupted. */
+        CANCELLED
+    }
+
+    /** The longest wait on the startup monitor before checking whether the process has exited. */
+    private static final long EXIT_CHECK_MILLIS = 250;
+
     private final URL server;
     private final Future<Integer> exitCode;
+    @Nullable
+    private final StartupMonitor startupMonitor;
+    @Nullable
+    private final ForkedProcess process;
+    private final long startTime;
 
     public ForkedServer(URL server, Future<Integer> exitCode) {
+        this(server, exitCode, null, null);
+    }
+
+    ForkedServer(URL server, Future<Integer> exitCode, @Nullable StartupMonitor startupMonitor,
+            @Nullable ForkedProcess process) {
         this.server = server;
         this.exitCode = exitCode;
+        this.startupMonitor = startupMonitor;
+        this.process = process;
+        this.startTime = process != null ? process.getStartTime() : System.currentTimeMillis();
     }
 
     public URL getServer() {
@@ -25,6 +55,72 @@ public class ForkedServer {
         return exitCode.isDone();
     }
 
+    /**
+     * @return The ID of the server's process, or null if it is unknown.
+     */
+    @Nullable
+    public Integer getPid() {
+        return process != null ? process.getPid() : null;
+    }
+
+    /**
+     * @return The time the server was forked, in milliseconds since the epoch.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return true if the output of the process is watched for a line indicating that it has started.
+     * @see #awaitStartedOrExited
+     */
+    public boolean isMonitoringOutput() {
+        return startupMonitor != null;
+    }
+
+    /**
+     * Waits up to timeout for the process to log that it has started or for it to exit.
+     * Returns immediately if the output of the process is not monitored.
+     * @return true if the process logged that it has started.
+     */
+    public boolean awaitStartedOrExited(long timeout, TimeUnit unit) {
+        if (startupMonitor == null) {
+            return false;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            long remaining;
+            while (!hasExited() && (remaining = deadline - System.nanoTime()) > 0) {
+                long wait = Math.min(TimeUnit.NANOSECONDS.toMillis(remaining), EXIT_CHECK_MILLIS);
+                if (startupMonitor.await(Math.max(wait, 1), TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        }
+        return startupMonitor.isMatched();
+    }
+
+    /**
+     * Stops the process and any processes it started, with increasing force. The process is
+     * asked to terminate then killed if it is still running after terminateTimeout. If the
+     * process is not known the thread waiting on it is interrupted, which destroys it.
+     */
+    public Destruction destroy(long terminateTimeout, TimeUnit unit) {
+        if (process == null) {
+            return exitCode.cancel(true) ? Destruction.CANCELLED : Destruction.EXITED;
+        }
+        if (!process.isAlive()) {
+            return Destruction.EXITED;
+        }
+        try {
+            return process.destroy(terminateTimeout, unit) ? Destruction.TERMINATED : Destruction.KILLED;
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
     public int getExitCode() {
         try {
             return exitCode.get();
@@ -35,12 +131,12 @@ public class ForkedServer {
 
     /**
      * Wait up to timeout for the exit status of the forked process.
-     * Returns -1 if it could not be learned in time.
+     * Returns -1 if it could not be learned in time or the process was {@link #destroy destroyed}.
      */
     public int getExitCode(long timeout, TimeUnit unit) {
         try {
             return exitCode.get(timeout, unit);
-        } catch (TimeoutException e) {
+        } catch (TimeoutException | CancellationException e) {
             return -1;
         } catch (Exception e) {
             throw Exceptions.propagate(e);
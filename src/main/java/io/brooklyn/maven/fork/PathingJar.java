@@ -0,0 +1,84 @@
+package io.brooklyn.maven.fork;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Writes a jar containing only a manifest whose <code>Class-Path</code> lists the
+ * entries of a classpath. Launching a process with the jar as its classpath keeps
+ * its command line short regardless of the number of dependencies.
+ */
+class PathingJar {
+
+    private PathingJar() {}
+
+    /**
+     * Writes a pathing jar for the given classpath unless the jar at the given path
+     * already lists the same entries.
+     * @return true if the jar was (re)written.
+     */
+    static boolean write(Path jar, List<Path> classpath) throws IOException {
+        String manifestClasspath = toManifestClasspath(classpath);
+        if (manifestClasspath.equals(readManifestClasspath(jar))) {
+            return false;
+        }
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, manifestClasspath);
+        // Write then move so a concurrent fork never sees a partial jar.
+        Path temp = Files.createTempFile(jar.toAbsolutePath().getParent(), "classpath", ".jar.tmp");
+        try (OutputStream out = Files.newOutputStream(temp);
+                JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+            jarOut.flush();
+        }
+        Files.move(temp, jar, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    /**
+     * Manifest classpaths are space-separated URLs. Directories must end with a slash
+     * to be treated as directories rather than jars.
+     */
+    private static String toManifestClasspath(List<Path> classpath) {
+        StringBuilder builder = new StringBuilder();
+        for (Path path : classpath) {
+            String uri = path.toAbsolutePath().toUri().toString();
+            if (!uri.endsWith("/") && !isArchive(path)) {
+                uri += "/";
+            }
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(uri);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isArchive(Path path) {
+        String name = path.getFileName() != null ? path.getFileName().toString().toLowerCase() : "";
+        return Files.isRegularFile(path) || name.endsWith(".jar") || name.endsWith(".zip");
+    }
+
+    private static String readManifestClasspath(Path jar) {
+        if (!Files.isRegularFile(jar)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(jar);
+                JarInputStream jarIn = new JarInputStream(in)) {
+            Manifest manifest = jarIn.getManifest();
+            return manifest != null ? manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+}
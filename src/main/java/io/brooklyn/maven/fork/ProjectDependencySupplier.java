@@ -14,6 +14,7 @@ import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 
@@ -36,6 +37,12 @@ public class ProjectDependencySupplier implements Supplier<List<Path>> {
     private boolean testOutputDirOnClasspath;
     private boolean outputDirOnClasspath;
 
+    @VisibleForTesting
+    ProjectDependencySupplier setProject(MavenProject project) {
+        this.project = project;
+        return this;
+    }
+
     public ProjectDependencySupplier setLocalRepository(ArtifactRepository localRepository) {
         this.localRepository = localRepository;
         return this;
@@ -0,0 +1,188 @@
+package io.brooklyn.maven.fork;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.apache.maven.shared.utils.cli.StreamConsumer;
+import org.codehaus.plexus.logging.Logger;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Writes the output of a forked server to rotating files on a dedicated thread.
+ * <p>
+ * Lines are handed over through a bounded buffer so the threads reading the process's
+ * output never wait on disk or console I/O. When the buffer is full the oldest lines
+ * are dropped and a note of how many were lost is written in their place. Lines that
+ * look like warnings or errors can be mirrored to the Maven log.
+ */
+class ServerLogWriter implements StreamConsumer, Closeable {
+
+    static final int BUFFER_LINES = 8192;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+    private static final Pattern WARNING = Pattern.compile("\\b(WARN|WARNING)\\b");
+    private static final Pattern ERROR = Pattern.compile("\\b(ERROR|SEVERE)\\b");
+    /** Marks the end of the stream. Compared by identity. */
+    private static final String END = new String("END");
+
+    private final Path file;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final boolean mirrorWarnings;
+    private final Logger logger;
+    private final BlockingQueue<String> buffer;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writerThread;
+
+    private Writer writer;
+    private long written;
+
+    /**
+     * @param file The file to write. Rotated files are suffixed .1, .2, etc.
+     * @param maxFileSize The size in bytes after which the file is rotated.
+     * @param maxFiles The number of files kept, including the current file.
+     * @param mirrorWarnings Whether warnings and errors should also be written to logger.
+     */
+    ServerLogWriter(Path file, long maxFileSize, int maxFiles, boolean mirrorWarnings, Logger logger) {
+        this(file, maxFileSize, maxFiles, mirrorWarnings, logger, BUFFER_LINES);
+    }
+
+    ServerLogWriter(Path file, long maxFileSize, int maxFiles, boolean mirrorWarnings, Logger logger, int bufferLines) {
+        checkArgument(maxFileSize > 0, "maxFileSize must be positive");
+        checkArgument(maxFiles > 0, "maxFiles must be positive");
+        this.file = checkNotNull(file, "file");
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.mirrorWarnings = mirrorWarnings;
+        this.logger = checkNotNull(logger, "logger");
+        this.buffer = new ArrayBlockingQueue<>(bufferLines);
+        this.writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "brooklyn-server-log-" + file.getFileName());
+        this.writerThread.setDaemon(true);
+    }
+
+    ServerLogWriter start() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        open(StandardOpenOption.APPEND);
+        writerThread.start();
+        return this;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /** Buffers the line without blocking, dropping the oldest buffered line if necessary. */
+    @Override
+    public void consumeLine(String line) {
+        while (!buffer.offer(line)) {
+            if (buffer.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Writes any buffered lines and closes the file. Waits briefly for the writer to finish.
+     */
+    @Override
+    public void close() {
+        try {
+            // Waits for space rather than dropping output that is already buffered.
+            if (buffer.offer(END, CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                writerThread.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+            } else {
+                logger.warn("Timed out writing server output to " + file);
+                writerThread.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        try {
+            String line;
+            while ((line = buffer.take()) != END) {
+                write(line);
+                if (buffer.isEmpty()) {
+                    writer.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.warn("Error writing server output to " + file + ": " + e.getMessage());
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.debug("Error closing " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void write(String line) throws IOException {
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            writeToFile("[" + lost + " lines of server output dropped]");
+        }
+        writeToFile(line);
+        if (mirrorWarnings) {
+            if (ERROR.matcher(line).find()) {
+                logger.error(line);
+            } else if (WARNING.matcher(line).find()) {
+                logger.warn(line);
+            }
+        }
+    }
+
+    private void writeToFile(String line) throws IOException {
+        if (written >= maxFileSize) {
+            rotate();
+        }
+        writer.write(line);
+        writer.write(System.lineSeparator());
+        // Close enough: counts chars rather than bytes.
+        written += line.length() + 1;
+    }
+
+    private void rotate() throws IOException {
+        writer.close();
+        for (int i = maxFiles - 1; i > 0; i--) {
+            Path source = i == 1 ? file : rotated(i - 1);
+            if (Files.exists(source)) {
+                Files.move(source, rotated(i), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        open(StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void open(StandardOpenOption mode) throws IOException {
+        writer = Files.newBufferedWriter(file, Charsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+        written = Files.size(file);
+    }
+
+}
@@ -3,6 +3,8 @@ package io.brooklyn.maven.fork;
 import java.net.URL;
 import javax.annotation.Nullable;
 
+import org.apache.brooklyn.util.time.Duration;
+
 import com.google.auto.value.AutoValue;
 
 @AutoValue
@@ -15,6 +17,8 @@ public abstract class ShutdownOptions {
                 .timeout("0")
                 .stopAllApplications(true)
                 .forceShutdownOnError(true)
+                .exitTimeout(Duration.THIRTY_SECONDS)
+                .terminateTimeout(Duration.TEN_SECONDS)
                 ;
     }
 
@@ -22,6 +26,10 @@ public abstract class ShutdownOptions {
     public abstract boolean stopAllApplications();
     public abstract boolean forceShutdownOnError();
     public abstract String timeout();
+    /** How long to wait for the process to exit after shutdown is requested before terminating it. */
+    public abstract Duration exitTimeout();
+    /** How long to wait for the process to exit after it is terminated before killing it. */
+    public abstract Duration terminateTimeout();
     @Nullable public abstract String username();
     @Nullable public abstract String password();
 
@@ -34,6 +42,8 @@ public abstract class ShutdownOptions {
         public abstract Builder stopAllApplications(boolean stopAllApplications);
         public abstract Builder forceShutdownOnError(boolean forceShutdownOnError);
         public abstract Builder timeout(String timeout);
+        public abstract Builder exitTimeout(Duration timeout);
+        public abstract Builder terminateTimeout(Duration timeout);
         public abstract Builder username(@Nullable String username);
         public abstract Builder password(@Nullable String port);
 
@@ -0,0 +1,67 @@
+package io.brooklyn.maven.fork;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.maven.shared.utils.cli.StreamConsumer;
+
+/**
+ * Watches the output of a forked process for a line indicating that it has started.
+ * Lines are passed on to a delegate consumer. Waiters are released when the line is
+ * seen or when the process exits, whichever happens first.
+ */
+class StartupMonitor implements StreamConsumer {
+
+    private final Pattern pattern;
+    private final StreamConsumer delegate;
+    private final CountDownLatch signal = new CountDownLatch(1);
+    private volatile boolean matched;
+
+    StartupMonitor(Pattern pattern, StreamConsumer delegate) {
+        this.pattern = checkNotNull(pattern, "pattern");
+        this.delegate = checkNotNull(delegate, "delegate");
+    }
+
+    @Override
+    public void consumeLine(String line) {
+        if (!matched && pattern.matcher(line).find()) {
+            matched = true;
+            signal.countDown();
+        }
+        delegate.consumeLine(line);
+    }
+
+    /**
+     * @return A runnable to call when the process exits.
+     */
+    Runnable exitListener() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                signal.countDown();
+            }
+        };
+    }
+
+    /**
+     * Waits for the startup line to be seen or the process to exit.
+     * @return true if the startup line was seen.
+     */
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        signal.await(timeout, unit);
+        return matched;
+    }
+
+    boolean isMatched() {
+        return matched;
+    }
+
+    @Override
+    public String toString() {
+        return "StartupMonitor{" + pattern.pattern() + "}";
+    }
+
+}
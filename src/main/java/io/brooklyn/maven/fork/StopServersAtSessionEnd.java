@@ -0,0 +1,40 @@
+package io.brooklyn.maven.fork;
+
+import javax.inject.Inject;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.execution.MavenSession;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Stops the servers still running when the build ends, including servers shared between
+ * projects, which the <code>stop-server</code> goal leaves running. Maven only calls
+ * lifecycle participants of plugins declared with <code>&lt;extensions&gt;true&lt;/extensions&gt;</code>.
+ * Without it the servers are stopped by the forker's shutdown hooks when Maven exits.
+ */
+@Component(
+        role = AbstractMavenLifecycleParticipant.class,
+        hint = "brooklyn-maven-plugin")
+public class StopServersAtSessionEnd extends AbstractMavenLifecycleParticipant {
+
+    private BrooklynForker forker;
+    private Logger logger;
+
+    @Inject
+    public void setForker(BrooklynForker forker) {
+        this.forker = forker;
+    }
+
+    @Inject
+    public void setLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public void afterSessionEnd(MavenSession session) {
+        logger.debug("Stopping servers remaining at the end of the build");
+        forker.cleanUp();
+    }
+
+}
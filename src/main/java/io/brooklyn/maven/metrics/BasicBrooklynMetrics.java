@@ -0,0 +1,174 @@
+package io.brooklyn.maven.metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Singleton;
+
+import org.apache.brooklyn.util.collections.Jsonya;
+import org.codehaus.plexus.component.annotations.Component;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Keeps metrics in memory for the duration of the build.
+ */
+@Singleton
+@Component(
+        role = BrooklynMetrics.class,
+        hint = "default")
+public class BasicBrooklynMetrics implements BrooklynMetrics {
+
+    static final String JSON_REPORT = "metrics.json";
+    static final String SUMMARY_REPORT = "metrics.txt";
+
+    private final long buildStart = System.currentTimeMillis();
+    private final List<PhaseRecord> phases = Lists.newArrayList();
+    /** Calls keyed by method and path. */
+    private final Map<String, CallRecord> calls = Maps.newTreeMap();
+
+    @Override
+    public synchronized void recordPhase(String source, String phase, long duration, TimeUnit unit) {
+        phases.add(new PhaseRecord(source, phase, System.currentTimeMillis() - buildStart, unit.toMillis(duration)));
+    }
+
+    @Override
+    public synchronized void recordCall(String method, String path, int status, long duration, TimeUnit unit) {
+        String key = method + " " + path;
+        CallRecord record = calls.get(key);
+        if (record == null) {
+            record = new CallRecord();
+            calls.put(key, record);
+        }
+        record.add(status, unit.toMicros(duration));
+    }
+
+    @Override
+    public void writeReport(Path directory) throws IOException {
+        String json;
+        String summary;
+        synchronized (this) {
+            json = toJson();
+            summary = toSummary();
+        }
+        Files.createDirectories(directory);
+        write(directory.resolve(JSON_REPORT), json);
+        write(directory.resolve(SUMMARY_REPORT), summary);
+    }
+
+    private static void write(Path file, String contents) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, contents.getBytes(Charsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private String toJson() {
+        List<Object> phaseList = Lists.newArrayList();
+        for (PhaseRecord phase : phases) {
+            Map<String, Object> entry = Maps.newLinkedHashMap();
+            entry.put("source", phase.source);
+            entry.put("phase", phase.phase);
+            entry.put("endedAfterMillis", phase.endedAfterMillis);
+            entry.put("durationMillis", phase.durationMillis);
+            phaseList.add(entry);
+        }
+        List<Object> callList = Lists.newArrayList();
+        for (Map.Entry<String, CallRecord> call : calls.entrySet()) {
+            CallRecord record = call.getValue();
+            Map<String, Object> entry = Maps.newLinkedHashMap();
+            entry.put("request", call.getKey());
+            entry.put("count", record.latencies.size());
+            entry.put("errors", record.errors);
+            entry.put("totalMillis", record.totalMicros() / 1000);
+            entry.put("p50Millis", record.percentile(50) / 1000.0);
+            entry.put("p95Millis", record.percentile(95) / 1000.0);
+            entry.put("maxMillis", record.percentile(100) / 1000.0);
+            callList.add(entry);
+        }
+        Map<String, Object> report = Maps.newLinkedHashMap();
+        report.put("buildStartMillis", buildStart);
+        report.put("phases", phaseList);
+        report.put("calls", callList);
+        return Jsonya.render(report);
+    }
+
+    private String toSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-40s %-24s %12s%n", "Source", "Phase", "Millis"));
+        for (PhaseRecord phase : phases) {
+            sb.append(String.format("%-40s %-24s %12d%n",
+                    truncate(phase.source, 40), truncate(phase.phase, 24), phase.durationMillis));
+        }
+        sb.append(String.format("%n%-60s %6s %6s %10s %10s %10s%n",
+                "Request", "Count", "Errors", "p50 ms", "p95 ms", "Max ms"));
+        for (Map.Entry<String, CallRecord> call : calls.entrySet()) {
+            CallRecord record = call.getValue();
+            sb.append(String.format("%-60s %6d %6d %10.1f %10.1f %10.1f%n",
+                    truncate(call.getKey(), 60), record.latencies.size(), record.errors,
+                    record.percentile(50) / 1000.0, record.percentile(95) / 1000.0, record.percentile(100) / 1000.0));
+        }
+        return sb.toString();
+    }
+
+    private static String truncate(String s, int length) {
+        return s.length() <= length ? s : s.substring(0, length - 3) + "...";
+    }
+
+    @Override
+    public synchronized String toString() {
+        return toSummary();
+    }
+
+    private static class PhaseRecord {
+        final String source;
+        final String phase;
+        final long endedAfterMillis;
+        final long durationMillis;
+
+        PhaseRecord(String source, String phase, long endedAfterMillis, long durationMillis) {
+            this.source = source;
+            this.phase = phase;
+            this.endedAfterMillis = endedAfterMillis;
+            this.durationMillis = durationMillis;
+        }
+    }
+
+    private static class CallRecord {
+        final List<Long> latencies = Lists.newArrayList();
+        int errors;
+
+        void add(int status, long micros) {
+            latencies.add(micros);
+            if (status < 200 || status >= 400) {
+                errors++;
+            }
+        }
+
+        long totalMicros() {
+            long total = 0;
+            for (Long latency : latencies) {
+                total += latency;
+            }
+            return total;
+        }
+
+        /** Nearest-rank percentile of the recorded latencies in microseconds. */
+        long percentile(int percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            List<Long> sorted = Lists.newArrayList(latencies);
+            Collections.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+            return sorted.get(Math.max(rank - 1, 0));
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package io.brooklyn.maven.metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records where time goes during a build: the phases of each goal and the calls
+ * made to Brooklyn servers. Shared by all goals and components in the build.
+ */
+public interface BrooklynMetrics {
+
+    /**
+     * Records that a phase of some work took the given time.
+     * @param source What did the work, e.g. a goal's name and execution ID.
+     * @param phase The name of the phase, e.g. "fork" or "time-to-running".
+     */
+    void recordPhase(String source, String phase, long duration, TimeUnit unit);
+
+    /**
+     * Records a request to a Brooklyn server.
+     * @param status The response code, or -1 if the request failed without a response.
+     */
+    void recordCall(String method, String path, int status, long duration, TimeUnit unit);
+
+    /**
+     * Writes everything recorded so far to <code>metrics.json</code> and a summary
+     * to <code>metrics.txt</code> in the given directory.
+     */
+    void writeReport(Path directory) throws IOException;
+
+}
@@ -0,0 +1,88 @@
+package io.brooklyn.maven.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts latencies in buckets whose width grows with their magnitude, so that any
+ * number of values is recorded in constant space and every percentile is accurate
+ * to within two percent. Values below {@link #SUB_BUCKETS} microseconds are counted
+ * exactly. Larger values are counted in {@link #SUB_BUCKETS}/2 buckets for each power
+ * of two and reported as the highest value of their bucket. Values of 2<sup>50</sup>
+ * microseconds or more are counted as the longest recordable value.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKETS = 128;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+    private static final int MAX_SHIFT = 50 - SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = (1L << 50) - 1;
+
+    private final long[] counts = new long[SUB_BUCKETS + MAX_SHIFT * HALF];
+    private long count;
+    private long total;
+    private long max;
+
+    public synchronized void record(long duration, TimeUnit unit) {
+        long micros = Math.min(Math.max(unit.toMicros(duration), 0), MAX_VALUE);
+        counts[index(micros)]++;
+        count++;
+        total += micros;
+        max = Math.max(max, micros);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /** @return The longest recorded value in microseconds. */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /** @return The mean of the recorded values in microseconds. */
+    public synchronized double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * @param percentile A percentile between 0 and 100.
+     * @return The nearest-rank percentile of the recorded values in microseconds,
+     *      or zero if nothing has been recorded.
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) ((value >> shift) - HALF);
+    }
+
+    private static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF + HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+}
@@ -2,10 +2,21 @@ package io.brooklyn.maven.mojo;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import org.apache.brooklyn.rest.client.BrooklynApi;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.time.Duration;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -13,20 +24,73 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Stopwatch;
 
+import io.brooklyn.maven.blueprint.BlueprintValidation;
+import io.brooklyn.maven.blueprint.Blueprints;
+import io.brooklyn.maven.client.BrooklynClientRegistry;
 import io.brooklyn.maven.fork.BrooklynForker;
+import io.brooklyn.maven.metrics.BrooklynMetrics;
 
 public abstract class AbstractBrooklynMojo extends AbstractMojo {
 
+    /** The name of the plugin's work directory within the build directory. */
+    protected static final String PLUGIN_NAME = "brooklyn-maven-plugin";
+
     @Parameter(defaultValue = "${project}", readonly = true)
     private MavenProject project;
 
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+    private MojoExecution mojoExecution;
+
     /**
      * Handles forks and cleaning them up.
      */
     @Component
     private BrooklynForker forker;
 
+    /**
+     * Shares clients and connections to Brooklyn servers between goals.
+     */
+    @Component
+    private BrooklynClientRegistry clients;
+
+    /**
+     * The maximum number of connections the build may open to any one Brooklyn server.
+     * Connections are shared by all goals in the build.
+     */
+    @Parameter(
+            property = "brooklyn.maxConnections",
+            defaultValue = "20")
+    private int maxConnections;
+
+    /**
+     * The number of seconds after which idle connections to Brooklyn servers are closed.
+     */
+    @Parameter(
+            property = "brooklyn.idleConnectionTimeout",
+            defaultValue = "30")
+    private int idleConnectionTimeout;
+
+    /**
+     * Records the time spent in each goal and in requests to Brooklyn servers.
+     */
+    @Component
+    private BrooklynMetrics metrics;
+
+    /**
+     * Whether to write the build's timings and requests to Brooklyn servers to
+     * <code>metrics.json</code> and <code>metrics.txt</code> in
+     * <code>${project.build.directory}/brooklyn-maven-plugin</code>. The files are
+     * rewritten after each goal and cover the build so far. Enable with
+     * <code>-Dbrooklyn.metrics=true</code>.
+     */
+    @Parameter(
+            property = "brooklyn.metrics",
+            defaultValue = "false")
+    private boolean writeMetrics;
+
     /**
      * The duration mojos should wait for actions at Brooklyn to complete.
      */
@@ -85,12 +149,22 @@ public abstract class AbstractBrooklynMojo extends AbstractMojo {
         this.skipITs = false;
         this.ignoreSkipTests = false;
         this.skipBrooklyn = false;
+        this.maxConnections = 20;
+        this.idleConnectionTimeout = 30;
+        this.writeMetrics = false;
     }
 
     protected MavenProject getProject() {
         return project;
     }
 
+    /**
+     * @return The ID of the project, or null if it is unknown.
+     */
+    protected String getProjectId() {
+        return project != null ? project.getId() : null;
+    }
+
     @VisibleForTesting
     AbstractBrooklynMojo setProject(MavenProject project) {
         this.project = project;
@@ -106,16 +180,140 @@ public abstract class AbstractBrooklynMojo extends AbstractMojo {
         this.forker = forker;
     }
 
+    /**
+     * @return A client for the server, shared with other goals if possible.
+     */
+    protected BrooklynApi getApi(URL server, String username, String password) {
+        if (clients != null) {
+            clients.configure(maxConnections, idleConnectionTimeout, TimeUnit.SECONDS);
+            return clients.get(server, username, password);
+        } else if (username != null && password != null) {
+            return new BrooklynApi(server, username, password);
+        } else {
+            return new BrooklynApi(server);
+        }
+    }
+
+    /**
+     * Waits up to the configured timeout for a server forked earlier in the build to be up.
+     * Returns immediately if the server is already up or was not forked by this build.
+     * @throws MojoFailureException if the server exits or is not up in time.
+     */
+    protected void awaitServerReady(URL server) throws MojoFailureException {
+        Future<URL> readiness = forker != null ? forker.getReadiness(server.toString()) : null;
+        if (readiness == null) {
+            return;
+        } else if (readiness.isDone()) {
+            getReady(readiness, server, 0);
+            return;
+        }
+        getLog().info("Waiting for server at " + server + " to be ready within " + getTimeout());
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        getReady(readiness, server, getTimeout().toMilliseconds());
+        getLog().info("Server at " + server + " ready after " + Duration.millis(stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+        recordPhase("await-server", stopwatch);
+    }
+
+    private void getReady(Future<URL> readiness, URL server, long timeoutMillis) throws MojoFailureException {
+        try {
+            readiness.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new MojoFailureException(cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            throw new MojoFailureException("Server at " + server + " does not appear to be running after " + getTimeout());
+        } catch (CancellationException e) {
+            throw new MojoFailureException("Server at " + server + " was stopped before it was ready");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    /**
+     * Records the time a phase of the goal took.
+     */
+    protected void recordPhase(String phase, Stopwatch stopwatch) {
+        if (metrics != null) {
+            metrics.recordPhase(getExecutionName(), phase, stopwatch.elapsed(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @VisibleForTesting
+    void setMetrics(BrooklynMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The goal and execution ID, or the name of the class if not run by Maven.
+     */
+    private String getExecutionName() {
+        String name = mojoExecution != null
+                ? mojoExecution.getGoal() + "@" + mojoExecution.getExecutionId()
+                : getClass().getSimpleName();
+        return project != null ? project.getArtifactId() + ":" + name : name;
+    }
+
     protected Duration getTimeout() {
         return Duration.of(timeout, timeoutUnit);
     }
 
     @VisibleForTesting
     AbstractBrooklynMojo setTimeout(int timeout, TimeUnit unit) {
+        this.timeout = timeout;
         this.timeoutUnit = checkNotNull(unit, "unit");
         return this;
     }
 
+    /**
+     * Interpolates and validates a blueprint as configured, logging any warnings.
+     * @param source Where the blueprint came from, for messages.
+     * @return The blueprint, interpolated if requested.
+     * @throws MojoFailureException if validation finds errors.
+     */
+    protected String prepareBlueprint(String source, String blueprint, boolean interpolate, boolean validate)
+            throws MojoFailureException {
+        String prepared = interpolate ? Blueprints.interpolate(blueprint, getBlueprintProperties()) : blueprint;
+        if (validate) {
+            BlueprintValidation validation = BlueprintValidation.of(prepared);
+            for (String warning : validation.getWarnings()) {
+                getLog().warn(source + ": " + warning);
+            }
+            if (!validation.isValid()) {
+                throw new MojoFailureException("Invalid blueprint " + source + ":\n" +
+                        Joiner.on('\n').join(validation.getErrors()));
+            }
+        }
+        return prepared;
+    }
+
+    /**
+     * @return The properties blueprints may refer to: the project's coordinates and properties,
+     *         overridden by system properties, which include those given on the command line.
+     */
+    protected Properties getBlueprintProperties() {
+        Properties properties = new Properties();
+        if (project != null) {
+            setIfNotNull(properties, "project.groupId", project.getGroupId());
+            setIfNotNull(properties, "project.artifactId", project.getArtifactId());
+            setIfNotNull(properties, "project.version", project.getVersion());
+            if (project.getBuild() != null) {
+                setIfNotNull(properties, "project.build.directory", project.getBuild().getDirectory());
+            }
+            if (project.getProperties() != null) {
+                properties.putAll(project.getProperties());
+            }
+        }
+        properties.putAll(System.getProperties());
+        return properties;
+    }
+
+    private static void setIfNotNull(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
     /**
      * @return true if skipBrooklyn is true and either skipTests or skipITs is true and ignoreSkipTests is false.
      */
@@ -151,7 +349,23 @@ public abstract class AbstractBrooklynMojo extends AbstractMojo {
         if (skipExecution()) {
             getLog().info("Tests are skipped.");
         } else {
-            doIt();
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            try {
+                doIt();
+            } finally {
+                recordPhase("total", stopwatch);
+                writeMetrics();
+            }
+        }
+    }
+
+    private void writeMetrics() {
+        if (metrics != null && writeMetrics && project != null && project.getBuild() != null) {
+            try {
+                metrics.writeReport(Paths.get(project.getBuild().getDirectory(), PLUGIN_NAME));
+            } catch (IOException e) {
+                getLog().warn("Could not write metrics: " + e.getMessage());
+            }
         }
     }
 
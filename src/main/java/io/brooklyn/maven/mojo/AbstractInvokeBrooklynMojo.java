@@ -18,21 +18,37 @@ package io.brooklyn.maven.mojo;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.net.URL;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.ws.rs.core.Response;
 
 import org.apache.brooklyn.api.mgmt.ha.ManagementNodeState;
 import org.apache.brooklyn.rest.client.BrooklynApi;
 import org.apache.brooklyn.rest.domain.Status;
+import org.apache.brooklyn.rest.domain.TaskSummary;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.repeat.Repeater;
 import org.apache.brooklyn.util.time.Duration;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import io.brooklyn.maven.poll.PollStrategy;
+import io.brooklyn.maven.poll.StatusWatch;
+
 /**
  * An abstract class for Mojos that invoke actions on an existing Brooklyn server.
  */
@@ -75,9 +91,32 @@ public abstract class AbstractInvokeBrooklynMojo extends AbstractBrooklynMojo {
             defaultValue = "SECONDS")
     private TimeUnit pollUnit;
 
+    /**
+     * How the period between polls changes while waiting for state to change at the server.
+     * <code>FIXED</code> polls every {@link #pollPeriod}. <code>EXPONENTIAL</code> polls
+     * quickly at first then backs off, with jitter, to {@link #pollPeriod}. <code>FAST_START</code>
+     * polls quickly for the first few seconds then every {@link #pollPeriod}.
+     */
+    @Parameter(
+            property = "brooklyn.pollStrategy",
+            defaultValue = "FIXED")
+    private PollStrategy pollStrategy;
+
+    /**
+     * What is polled while waiting for deployed applications to start. <code>APPLICATION</code>
+     * polls each application's summary. <code>TASK</code> polls the task that deployed each
+     * application until it ends and then checks the application's status once, falling back to
+     * <code>APPLICATION</code> if the server cannot report the task.
+     */
+    @Parameter(
+            property = "brooklyn.statusWatch",
+            defaultValue = "APPLICATION")
+    private StatusWatch statusWatch;
+
     /**
      * Sets whether servers started by {@link StartBrooklynMojo} should be
-     * stopped if execution of the goal fails.
+     * stopped if execution of the goal fails. Only servers started for the same
+     * project are stopped, and not those shared with other projects.
      */
     @Parameter(
             property = "brooklyn.tearDownOnFailure",
@@ -99,16 +138,25 @@ public abstract class AbstractInvokeBrooklynMojo extends AbstractBrooklynMojo {
         // Values are overwritten when Maven invokes the plugin.
         this.pollPeriod = 1;
         this.pollUnit = TimeUnit.SECONDS;
+        this.pollStrategy = PollStrategy.FIXED;
+        this.statusWatch = StatusWatch.APPLICATION;
         this.tearDownOnFailure = true;
     }
 
-    protected BrooklynApi getApi() {
+    /**
+     * @return A client for {@link #server}. The first call waits for the server to be ready
+     *      if it was forked earlier in the build and has not yet started.
+     * @throws RuntimeException wrapping a {@link MojoFailureException} if the server is not
+     *      ready within the configured timeout.
+     */
+    protected synchronized BrooklynApi getApi() {
         if (api == null) {
-            if (username != null && password != null) {
-                api = new BrooklynApi(server, username, password);
-            } else {
-                api = new BrooklynApi(server);
+            try {
+                awaitServerReady(server);
+            } catch (MojoFailureException e) {
+                throw Exceptions.propagate(e);
             }
+            api = getApi(server, username, password);
         }
         return api;
     }
@@ -122,10 +170,25 @@ public abstract class AbstractInvokeBrooklynMojo extends AbstractBrooklynMojo {
     }
 
     AbstractInvokeBrooklynMojo setPollPeriod(int period, TimeUnit unit) {
+        this.pollPeriod = period;
         this.pollUnit = checkNotNull(unit, "unit");
         return this;
     }
 
+    protected PollStrategy getPollStrategy() {
+        return pollStrategy;
+    }
+
+    AbstractInvokeBrooklynMojo setPollStrategy(PollStrategy strategy) {
+        this.pollStrategy = checkNotNull(strategy, "strategy");
+        return this;
+    }
+
+    AbstractInvokeBrooklynMojo setStatusWatch(StatusWatch watch) {
+        this.statusWatch = checkNotNull(watch, "watch");
+        return this;
+    }
+
     AbstractInvokeBrooklynMojo setCredentials(String user, String password) {
         this.username = checkNotNull(user, "user");
         this.password = checkNotNull(password, "password");
@@ -165,32 +228,117 @@ public abstract class AbstractInvokeBrooklynMojo extends AbstractBrooklynMojo {
      * and desiredStatus is something else.
      * @return the final polled status
      */
-    protected Status waitForAppStatus(final String application, final Status desiredStatus) {
-        final AtomicReference<Status> appStatus = new AtomicReference<Status>(Status.UNKNOWN);
+    protected Status waitForAppStatus(String application, Status desiredStatus) {
+        return waitForAppStatuses(ImmutableList.of(application), desiredStatus).get(application);
+    }
+
+    /**
+     * Polls Brooklyn until all of the given applications have the given status. Each poll
+     * checks every application still pending, so a single poller serves any number of
+     * applications. Applications whose status is {@link Status#ERROR} or {@link Status#UNKNOWN}
+     * stop being polled unless desiredStatus is one of those values.
+     * @return the final polled status of each application
+     */
+    protected Map<String, Status> waitForAppStatuses(Collection<String> applications, Status desiredStatus) {
+        return waitForAppStatuses(applications, desiredStatus, getTimeout());
+    }
+
+    private Map<String, Status> waitForAppStatuses(Collection<String> applications, final Status desiredStatus, Duration limit) {
+        final Map<String, Status> statuses = Maps.newLinkedHashMap();
+        for (String application : applications) {
+            statuses.put(application, Status.UNKNOWN);
+        }
+        final Set<String> pending = Sets.newLinkedHashSet(applications);
+        final AtomicInteger polls = new AtomicInteger();
         final boolean shortcutOnError = !Status.ERROR.equals(desiredStatus) && !Status.UNKNOWN.equals(desiredStatus);
-        getLog().info("Waiting " + getTimeout() + " from " + new Date() + " for application " + application + " to be " + desiredStatus);
-        Repeater.create("Waiting for application " + application + " status to be " + desiredStatus)
-                .every(getPollPeriod())
-                .limitTimeTo(getTimeout())
+        final String description = applications.size() == 1
+                ? "application " + Iterables.getOnlyElement(applications)
+                : applications.size() + " applications";
+        getLog().info("Waiting " + limit + " from " + new Date() + " for " + description + " to be " + desiredStatus);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Repeater.create("Waiting for " + description + " status to be " + desiredStatus)
+                .delayOnIteration(pollStrategy.delays(getPollPeriod()))
+                .limitTimeTo(limit)
                 .rethrowExceptionImmediately()
                 .until(new Callable<Boolean>() {
                     @Override
                     public Boolean call() throws Exception {
-                        Status status = getApi().getApplicationApi().get(application).getStatus();
-                        getLog().debug("Application " + application + " status is: " + status);
-                        appStatus.set(status);
-                        return desiredStatus.equals(status) || (shortcutOnError &&
-                                (Status.ERROR.equals(status) || Status.UNKNOWN.equals(status)));
+                        polls.incrementAndGet();
+                        for (Iterator<String> it = pending.iterator(); it.hasNext(); ) {
+                            String application = it.next();
+                            Status status = getApi().getApplicationApi().get(application).getStatus();
+                            getLog().debug("Application " + application + " status is: " + status);
+                            statuses.put(application, status);
+                            if (desiredStatus.equals(status) || (shortcutOnError &&
+                                    (Status.ERROR.equals(status) || Status.UNKNOWN.equals(status)))) {
+                                it.remove();
+                            }
+                        }
+                        return pending.isEmpty();
                     }
                 })
                 .run();
-        if (appStatus.get().equals(desiredStatus)) {
-            getLog().info("Application " + application + " is " + desiredStatus.name());
-        } else {
-            getLog().warn("Application is not " + desiredStatus.name() + " within " + getTimeout() +
-                    ". Status is: " + appStatus.get());
+        Duration elapsed = Duration.millis(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        for (Map.Entry<String, Status> entry : statuses.entrySet()) {
+            if (entry.getValue().equals(desiredStatus)) {
+                getLog().info("Application " + entry.getKey() + " is " + desiredStatus.name() + " after " +
+                        elapsed + " and " + polls.get() + " polls");
+            } else {
+                getLog().warn("Application " + entry.getKey() + " is not " + desiredStatus.name() +
+                        " within " + getTimeout() + ". Status is: " + entry.getValue());
+            }
+        }
+        return ImmutableMap.copyOf(statuses);
+    }
+
+    /**
+     * Waits for applications created by the given deployment tasks to have the given
+     * status, watching them as configured by {@link #statusWatch}.
+     * @param tasksByApplication The ID of the task that deployed each application, keyed by application ID.
+     * @return the final polled status of each application
+     */
+    protected Map<String, Status> waitForDeployments(Map<String, String> tasksByApplication, Status desiredStatus) {
+        if (!StatusWatch.TASK.equals(statusWatch)) {
+            return waitForAppStatuses(tasksByApplication.keySet(), desiredStatus);
         }
-        return appStatus.get();
+        final Map<String, String> pending = Maps.newLinkedHashMap(tasksByApplication);
+        final AtomicInteger polls = new AtomicInteger();
+        getLog().info("Waiting " + getTimeout() + " from " + new Date() + " for the deployment tasks of " +
+                tasksByApplication.size() + " application(s) to end");
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Repeater.create("Waiting for deployment tasks to end")
+                .delayOnIteration(pollStrategy.delays(getPollPeriod()))
+                .limitTimeTo(getTimeout())
+                .until(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        polls.incrementAndGet();
+                        for (Iterator<Map.Entry<String, String>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+                            Map.Entry<String, String> entry = it.next();
+                            TaskSummary task;
+                            try {
+                                task = getApi().getActivityApi().get(entry.getValue());
+                            } catch (Exception e) {
+                                Exceptions.propagateIfFatal(e);
+                                getLog().debug("Unable to watch task " + entry.getValue() + " for application " +
+                                        entry.getKey() + ", polling its status instead: " + e.getMessage());
+                                it.remove();
+                                continue;
+                            }
+                            if (task == null || task.getEndTimeUtc() != null) {
+                                getLog().debug("Deployment task " + entry.getValue() + " for application " +
+                                        entry.getKey() + " has ended" + (task != null && task.isError() ? " in error" : ""));
+                                it.remove();
+                            }
+                        }
+                        return pending.isEmpty();
+                    }
+                })
+                .run();
+        Duration elapsed = Duration.millis(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        getLog().debug("Watched deployment tasks for " + elapsed + " and " + polls.get() + " polls");
+        Duration remaining = Duration.max(getTimeout().subtract(elapsed), Duration.ZERO);
+        return waitForAppStatuses(tasksByApplication.keySet(), desiredStatus, remaining);
     }
 
     /**
@@ -18,23 +18,51 @@ package io.brooklyn.maven.mojo;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.ws.rs.core.Response;
 
 import org.apache.brooklyn.rest.client.BrooklynApi;
+import org.apache.brooklyn.rest.domain.CatalogEntitySummary;
 import org.apache.brooklyn.rest.domain.Status;
 import org.apache.brooklyn.rest.domain.TaskSummary;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.DirectoryScanner;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
-import com.google.common.io.CharSource;
-import com.google.common.io.Files;
-import com.google.common.io.Resources;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import io.brooklyn.maven.blueprint.BlueprintCache;
+import io.brooklyn.maven.blueprint.Blueprints;
 
 /**
  * Instruct an existing Brooklyn server to deploy the given blueprint.
@@ -43,14 +71,39 @@ import com.google.common.io.Resources;
         defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST)
 public class DeployBlueprintMojo extends AbstractInvokeBrooklynMojo {
 
+    /** Matches the types referred to by a blueprint, e.g. <code>- type: my-catalog-item:1.0</code>. */
+    private static final Pattern TYPE_REFERENCE = Pattern.compile("(?m)^[\\s-]*type:\\s*[\"']?([^\\s\"'#]+)");
+
     /**
      * The location of the blueprint to deploy. Either a file on disk or a remote URL.
+     * One of this parameter and {@link #blueprints} must be given.
      */
     @Parameter(
-            required = true,
             property = "brooklyn.blueprint")
     private String blueprint;
 
+    /**
+     * The locations of several blueprints to deploy concurrently. Each entry may be a
+     * file on disk, a remote URL or a pattern like <code>src/test/blueprints/*.yaml</code>
+     * matching files relative to the project's base directory.
+     * <p/>
+     * The ID of each application is set on the project as
+     * <code>${applicationIdProperty}.${index}</code>, in the order the blueprints are given,
+     * and as <code>${applicationIdProperty}.${name}</code>, where name is the blueprint's
+     * file name without its extension. Names shared by several blueprints are not set.
+     * {@link #applicationIdProperty} itself is set to a comma-separated list of all of the IDs.
+     */
+    @Parameter
+    private List<String> blueprints;
+
+    /**
+     * The maximum number of {@link #blueprints} to load and submit to the server at once.
+     */
+    @Parameter(
+            property = "brooklyn.maxConcurrentDeployments",
+            defaultValue = "4")
+    private int maxConcurrentDeployments;
+
     /**
      * The encoding of the blueprint to deploy.
      */
@@ -85,6 +138,89 @@ public class DeployBlueprintMojo extends AbstractInvokeBrooklynMojo {
     @Parameter(defaultValue = "true")
     private boolean stopAppOnDeployError;
 
+    /**
+     * Reuse applications deployed by earlier builds. When true the goal hashes each blueprint
+     * together with the server's URL and the catalog items the blueprint refers to by
+     * <code>type</code>. If an application recorded in {@link #deploymentRecords} for the
+     * same hash is still running it is used instead of deploying the blueprint again.
+     * Intended for iterative test runs against a long-lived server.
+     */
+    @Parameter(
+            property = "brooklyn.reuseDeployments",
+            defaultValue = "false")
+    private boolean reuseDeployments;
+
+    /**
+     * The file in which the applications deployed for each blueprint are recorded when
+     * {@link #reuseDeployments} is true.
+     */
+    @Parameter(
+            property = "brooklyn.deploymentRecords",
+            defaultValue = "${project.build.directory}/" + PLUGIN_NAME + "/deployments.properties")
+    private File deploymentRecords;
+
+    /**
+     * The directory in which copies of blueprints loaded from HTTP and HTTPS URLs are kept.
+     * A cached copy is revalidated with the remote server using its ETag and Last-Modified
+     * headers and is used if the remote server cannot be reached. Remote blueprints are
+     * always cached, in the plugin's directory under the build directory by default.
+     */
+    @Parameter(
+            property = "brooklyn.blueprintCacheDirectory",
+            defaultValue = "${project.build.directory}/" + PLUGIN_NAME + "/blueprints")
+    private File blueprintCacheDirectory;
+
+    /**
+     * The number of seconds for which a cached copy of a remote blueprint is used without
+     * revalidating it with the remote server.
+     */
+    @Parameter(
+            property = "brooklyn.blueprintCacheTtl",
+            defaultValue = "0")
+    private int blueprintCacheTtl;
+
+    /**
+     * The number of seconds to wait to connect to the server hosting a remote blueprint.
+     */
+    @Parameter(
+            property = "brooklyn.blueprintConnectTimeout",
+            defaultValue = "10")
+    private int blueprintConnectTimeout;
+
+    /**
+     * The number of seconds to wait for data from the server hosting a remote blueprint.
+     */
+    @Parameter(
+            property = "brooklyn.blueprintReadTimeout",
+            defaultValue = "30")
+    private int blueprintReadTimeout;
+
+    /**
+     * Replace references like <code>${brooklyn.port}</code> or <code>${project.version}</code>
+     * in blueprints with the values of the project's properties, overridden by system properties.
+     * The project's <code>groupId</code>, <code>artifactId</code>, <code>version</code> and
+     * <code>build.directory</code> are available with a <code>project.</code> prefix. References
+     * to properties that are not set are left as they are.
+     */
+    @Parameter(
+            property = "brooklyn.interpolateBlueprints",
+            defaultValue = "false")
+    private boolean interpolateBlueprints;
+
+    /**
+     * Check that blueprints are YAML and that they have services, each with a type, before
+     * giving any of them to the server. If any blueprint fails the check the goal fails
+     * without deploying any of them. Blueprints without a location are logged as warnings.
+     * Off by default because the server may accept blueprints that fail these checks.
+     */
+    @Parameter(
+            property = "brooklyn.validateBlueprints",
+            defaultValue = "false")
+    private boolean validateBlueprints;
+
+    private DeploymentRecords records;
+    private BlueprintCache blueprintCache;
+
     /**
      * Constructor for use by Maven/Guice.
      */
@@ -101,8 +237,11 @@ public class DeployBlueprintMojo extends AbstractInvokeBrooklynMojo {
         this.blueprint = blueprint;
         this.blueprintEncoding = "UTF-8";
         this.applicationIdProperty = applicationIdProperty;
+        this.maxConcurrentDeployments = 4;
         this.waitForRunning = true;
         this.stopAppOnDeployError = true;
+        this.blueprintConnectTimeout = 10;
+        this.blueprintReadTimeout = 30;
     }
 
     @Override
@@ -114,23 +253,17 @@ public class DeployBlueprintMojo extends AbstractInvokeBrooklynMojo {
         getLog().debug("Working with server at " + server);
         // Propagates all non-mojo exceptions as MojoFailureExceptions
         try {
-            String loadedBlueprint = loadBlueprint();
-            getLog().debug("Blueprint:\n" + loadedBlueprint);
-            final TaskSummary task = deployBlueprint(loadedBlueprint);
-            final String application = task.getEntityId();
-            if (waitForRunning) {
-                waitForRunningAndThrowOtherwise(application, task.getId());
-            }
-            if (applicationIdProperty != null) {
-                getProject().getProperties().setProperty(applicationIdProperty, application);
-                getLog().debug("Set property '" + applicationIdProperty + "' to: " + application);
+            if (blueprints != null && !blueprints.isEmpty()) {
+                deployAll(resolveBlueprints());
+            } else if (blueprint != null) {
+                deploy(blueprint);
             } else {
-                getLog().info("No property to set to new application ID");
+                throw new MojoFailureException("One of blueprint or blueprints must be set");
             }
         } catch (Exception e) {
             if (getForker() != null && shouldTearDownOnFailure()) {
                 getLog().info("Exception deploying blueprint. Cleaning up forked servers.");
-                getForker().cleanUp();
+                getForker().cleanUpProject(getProjectId());
             }
             if (e instanceof MojoFailureException) {
                 throw e;
@@ -140,7 +273,317 @@ public class DeployBlueprintMojo extends AbstractInvokeBrooklynMojo {
         }
     }
 
-    private String loadBlueprint() throws MojoFailureException {
+    private void deploy(String blueprint) throws MojoFailureException {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        String loadedBlueprint = prepareBlueprint(blueprint, loadBlueprint(blueprint),
+                interpolateBlueprints, validateBlueprints);
+        recordPhase("deploy-prepare", stopwatch);
+        getLog().debug("Blueprint:\n" + Blueprints.summarise(loadedBlueprint));
+        String hash = reuseDeployments ? deploymentHash(loadedBlueprint) : null;
+        String reused = hash != null ? findRunningDeployment(blueprint, hash) : null;
+        if (reused != null) {
+            recordPhase("deploy-reuse", stopwatch);
+            setApplicationIdProperty(applicationIdProperty, reused);
+            return;
+        }
+        final TaskSummary task = deployBlueprint(loadedBlueprint);
+        recordPhase("deploy-submit", stopwatch);
+        final String application = task.getEntityId();
+        recordDeployment(hash, application);
+        if (waitForRunning) {
+            waitForRunningAndThrowOtherwise(application, task.getId());
+            recordPhase("time-to-running", stopwatch);
+        }
+        setApplicationIdProperty(applicationIdProperty, application);
+    }
+
+    /**
+     * Loads and checks all of the given blueprints, then submits them concurrently and
+     * waits for all of the resulting applications with a single poller. Nothing is
+     * submitted if any blueprint cannot be loaded or is invalid.
+     */
+    private void deployAll(final List<String> sources) throws MojoFailureException {
+        int threads = Math.max(1, Math.min(maxConcurrentDeployments, sources.size()));
+        getLog().info("Deploying " + sources.size() + " blueprints, at most " + threads + " at once");
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Map<Integer, Deployment> deployments = Maps.newLinkedHashMap();
+        List<String> failures = Lists.newArrayList();
+        try {
+            Map<Integer, Future<String>> loads = Maps.newLinkedHashMap();
+            for (int i = 0; i < sources.size(); i++) {
+                final String source = sources.get(i);
+                loads.put(i, executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        String loadedBlueprint = prepareBlueprint(source, loadBlueprint(source),
+                                interpolateBlueprints, validateBlueprints);
+                        getLog().debug("Blueprint " + source + ":\n" + Blueprints.summarise(loadedBlueprint));
+                        return loadedBlueprint;
+                    }
+                }));
+            }
+            Map<Integer, String> loadedBlueprints = awaitAll(loads, sources, "load", failures);
+            recordPhase("deploy-prepare", stopwatch);
+            if (!failures.isEmpty()) {
+                throw new MojoFailureException(failures.size() + " of " + sources.size() +
+                        " blueprints could not be loaded; none were deployed:\n" + Joiner.on('\n').join(failures));
+            }
+
+            Map<Integer, Future<Deployment>> submissions = Maps.newLinkedHashMap();
+            for (final Map.Entry<Integer, String> loaded : loadedBlueprints.entrySet()) {
+                final String source = sources.get(loaded.getKey());
+                submissions.put(loaded.getKey(), executor.submit(new Callable<Deployment>() {
+                    @Override
+                    public Deployment call() throws Exception {
+                        String hash = reuseDeployments ? deploymentHash(loaded.getValue()) : null;
+                        String reused = hash != null ? findRunningDeployment(source, hash) : null;
+                        if (reused != null) {
+                            return new Deployment(reused, null);
+                        }
+                        TaskSummary task = deployBlueprint(loaded.getValue());
+                        recordDeployment(hash, task.getEntityId());
+                        return new Deployment(task.getEntityId(), task.getId());
+                    }
+                }));
+            }
+            deployments.putAll(awaitAll(submissions, sources, "deploy", failures));
+        } finally {
+            executor.shutdownNow();
+        }
+        recordPhase("deploy-submit", stopwatch);
+
+        // Reused applications are already running.
+        Map<String, String> tasksByApp = Maps.newLinkedHashMap();
+        for (Deployment deployment : deployments.values()) {
+            if (deployment.task != null) {
+                tasksByApp.put(deployment.application, deployment.task);
+            }
+        }
+        if (waitForRunning && !tasksByApp.isEmpty()) {
+            Map<String, Status> statuses = waitForDeployments(tasksByApp, Status.RUNNING);
+            recordPhase("time-to-running", stopwatch);
+            for (Map.Entry<String, Status> entry : statuses.entrySet()) {
+                if (!Status.RUNNING.equals(entry.getValue())) {
+                    failures.add(handleDeployError(entry.getKey(), tasksByApp.get(entry.getKey()), entry.getValue()));
+                }
+            }
+        }
+
+        List<String> ids = Lists.newArrayList();
+        if (applicationIdProperty != null) {
+            Multiset<String> names = HashMultiset.create();
+            for (String source : sources) {
+                names.add(blueprintName(source));
+            }
+            for (String name : names.elementSet()) {
+                if (names.count(name) > 1) {
+                    getLog().warn(names.count(name) + " blueprints are named " + name + " so " +
+                            applicationIdProperty + "." + name + " is not set. Use the properties named by index.");
+                }
+            }
+            for (Map.Entry<Integer, Deployment> entry : deployments.entrySet()) {
+                String application = entry.getValue().application;
+                String name = blueprintName(sources.get(entry.getKey()));
+                ids.add(application);
+                setApplicationIdProperty(applicationIdProperty + "." + entry.getKey(), application);
+                if (names.count(name) == 1) {
+                    setApplicationIdProperty(applicationIdProperty + "." + name, application);
+                }
+            }
+        }
+        setApplicationIdProperty(applicationIdProperty, Joiner.on(',').join(ids));
+
+        if (!failures.isEmpty()) {
+            throw new MojoFailureException(failures.size() + " of " + sources.size() +
+                    " blueprints failed to deploy:\n" + Joiner.on('\n').join(failures));
+        }
+    }
+
+    /**
+     * Waits for each of the given futures, adding a description of each that fails to failures.
+     * @param futures Futures keyed by the index of their blueprint in sources.
+     * @return The results of the futures that succeeded, keyed by the index of their blueprint.
+     */
+    private <T> Map<Integer, T> awaitAll(Map<Integer, Future<T>> futures, List<String> sources, String action,
+            List<String> failures) {
+        Map<Integer, T> results = Maps.newLinkedHashMap();
+        for (Map.Entry<Integer, Future<T>> future : futures.entrySet()) {
+            String source = sources.get(future.getKey());
+            try {
+                results.put(future.getKey(), future.getValue().get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                getLog().error("Failed to " + action + " " + source, cause);
+                failures.add("Failed to " + action + " " + source + ": " + cause.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Exceptions.propagate(e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Identifies everything that determines what deploying the given blueprint creates:
+     * the server, the blueprint and the catalog items it refers to.
+     */
+    private String deploymentHash(String blueprint) {
+        Hasher hasher = Hashing.sha1().newHasher()
+                .putString(server.toString(), Charsets.UTF_8).putChar('\0')
+                .putString(blueprint, Charsets.UTF_8);
+        Matcher matcher = TYPE_REFERENCE.matcher(blueprint);
+        Set<String> types = Sets.newTreeSet();
+        while (matcher.find()) {
+            types.add(matcher.group(1));
+        }
+        for (String type : types) {
+            hasher.putChar('\0').putString(type, Charsets.UTF_8);
+            try {
+                CatalogEntitySummary item = getApi().getCatalogApi().getEntity_0_7_0(type);
+                if (item != null) {
+                    hasher.putChar('\0').putString(Strings.nullToEmpty(item.getId()), Charsets.UTF_8)
+                            .putChar('\0').putString(Strings.nullToEmpty(item.getPlanYaml()), Charsets.UTF_8);
+                }
+            } catch (Exception e) {
+                // Not a catalog item: a Java type, a location or something the server does not know.
+                Exceptions.propagateIfFatal(e);
+                getLog().debug("No catalog item for " + type + ": " + e.getMessage());
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * @return The ID of a running application previously deployed for the given hash, or null.
+     */
+    private String findRunningDeployment(String blueprint, String hash) {
+        try {
+            String application = getRecords().get(hash);
+            if (application == null) {
+                getLog().info("No earlier deployment of " + blueprint + " to reuse");
+                return null;
+            }
+            Status status;
+            try {
+                status = getApi().getApplicationApi().get(application).getStatus();
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                getLog().debug("Unable to get status of application " + application + ": " + e.getMessage());
+                status = null;
+            }
+            if (Status.RUNNING.equals(status)) {
+                getLog().info("Reusing application " + application + " deployed earlier from " + blueprint);
+                return application;
+            }
+            getLog().info("Not reusing application " + application + " deployed earlier from " + blueprint +
+                    ": its status is " + (status != null ? status : "unknown"));
+            getRecords().remove(hash);
+        } catch (IOException e) {
+            getLog().warn("Unable to read deployment records from " + deploymentRecords + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    private void recordDeployment(String hash, String application) {
+        if (hash != null) {
+            try {
+                getRecords().put(hash, application);
+            } catch (IOException e) {
+                getLog().warn("Unable to record deployment in " + deploymentRecords + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private synchronized DeploymentRecords getRecords() {
+        if (records == null) {
+            records = new DeploymentRecords(deploymentRecords.toPath());
+        }
+        return records;
+    }
+
+    private void setApplicationIdProperty(String property, String application) {
+        if (property != null) {
+            getProject().getProperties().setProperty(property, application);
+            getLog().debug("Set property '" + property + "' to: " + application);
+        } else {
+            getLog().info("No property to set to new application ID");
+        }
+    }
+
+    /**
+     * Expands any patterns in {@link #blueprints} to the files they match.
+     */
+    private List<String> resolveBlueprints() throws MojoFailureException {
+        List<String> resolved = Lists.newArrayList();
+        if (blueprint != null) {
+            resolved.add(blueprint);
+        }
+        for (String entry : blueprints) {
+            if (!isUrl(entry) && (entry.contains("*") || entry.contains("?"))) {
+                List<String> matches = expandPattern(entry);
+                if (matches.isEmpty()) {
+                    throw new MojoFailureException("No blueprints match " + entry);
+                }
+                resolved.addAll(matches);
+            } else {
+                resolved.add(entry);
+            }
+        }
+        return resolved;
+    }
+
+    private List<String> expandPattern(String pattern) {
+        // Split the pattern into the directory to search and the pattern to match in it.
+        String normalised = pattern.replace('\\', '/');
+        int wildcard = normalised.length();
+        for (char c : new char[]{'*', '?'}) {
+            int i = normalised.indexOf(c);
+            if (i >= 0) wildcard = Math.min(wildcard, i);
+        }
+        int lastSeparator = normalised.lastIndexOf('/', wildcard);
+        String directory = lastSeparator >= 0 ? normalised.substring(0, lastSeparator + 1) : "";
+        String include = normalised.substring(lastSeparator + 1);
+
+        File base = new File(directory);
+        if (!base.isAbsolute() && getProject() != null && getProject().getBasedir() != null) {
+            base = new File(getProject().getBasedir(), directory);
+        }
+        List<String> matches = Lists.newArrayList();
+        if (base.isDirectory()) {
+            DirectoryScanner scanner = new DirectoryScanner();
+            scanner.setBasedir(base);
+            scanner.setIncludes(new String[]{include});
+            scanner.scan();
+            String[] files = scanner.getIncludedFiles();
+            Arrays.sort(files);
+            for (String file : files) {
+                matches.add(new File(base, file).getAbsolutePath());
+            }
+        }
+        return matches;
+    }
+
+    private boolean isUrl(String blueprint) {
+        return blueprint.contains("://");
+    }
+
+    /**
+     * @return The name of the file or last path segment of the URL, without an extension.
+     */
+    private String blueprintName(String blueprint) {
+        String name = blueprint;
+        int query = name.indexOf('?');
+        if (isUrl(name) && query >= 0) {
+            name = name.substring(0, query);
+        }
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        int extension = name.lastIndexOf('.');
+        return extension > 0 ? name.substring(0, extension) : name;
+    }
+
+    @VisibleForTesting
+    String loadBlueprint(String blueprint) throws MojoFailureException {
         File f = new File(blueprint);
         if (f.isFile()) {
             if (f.canRead()) {
@@ -165,31 +608,63 @@ public class DeployBlueprintMojo extends AbstractInvokeBrooklynMojo {
     }
 
     private void waitForRunningAndThrowOtherwise(String appId, String taskId) throws MojoFailureException {
-        Status finalStatus = waitForAppStatus(appId, Status.RUNNING);
+        Status finalStatus = waitForDeployments(ImmutableMap.of(appId, taskId), Status.RUNNING).get(appId);
+        if (Status.RUNNING.equals(finalStatus) && getLog().isDebugEnabled()) {
+            logDetectionLag(taskId, System.currentTimeMillis());
+        }
         if (!Status.RUNNING.equals(finalStatus)) {
-            getLog().error("Application is not running. Is: " + finalStatus.name().toLowerCase());
-
-            StringBuilder message = new StringBuilder();
-            message.append("Application ").append(appId)
-                    .append(" should be running but is ").append(finalStatus.name().toLowerCase())
-                    .append(". ");
-            if (stopAppOnDeployError) {
-                try {
-                    new StopApplicationMojo(server, appId).execute();
-                    message.append("The application was requested to stop.");
-                } catch (Exception e) {
-                    message.append("It was not possible to stop the application; its resources may still be running: ")
-                            .append(e.getMessage());
-                }
-            } else {
-                message.append("It was not requested to stop; its resources may still be running.");
+            throw new MojoFailureException(handleDeployError(appId, taskId, finalStatus));
+        }
+    }
+
+    /**
+     * Stops the given application if {@link #stopAppOnDeployError} is set.
+     * @return A description of the failure.
+     */
+    private String handleDeployError(String appId, String taskId, Status finalStatus) {
+        getLog().error("Application " + appId + " is not running. Is: " + finalStatus.name().toLowerCase());
+
+        StringBuilder message = new StringBuilder();
+        message.append("Application ").append(appId)
+                .append(" should be running but is ").append(finalStatus.name().toLowerCase())
+                .append(". ");
+        if (stopAppOnDeployError) {
+            try {
+                new StopApplicationMojo(server, appId).execute();
+                message.append("The application was requested to stop.");
+            } catch (Exception e) {
+                message.append("It was not possible to stop the application; its resources may still be running: ")
+                        .append(e.getMessage());
             }
-            if (Status.ERROR.equals(finalStatus) || Status.UNKNOWN.equals(finalStatus)) {
-                String result = getTaskResult(taskId);
-                message.append("\nThe result of the task on the server was:\n")
-                        .append(result);
+        } else {
+            message.append("It was not requested to stop; its resources may still be running.");
+        }
+        if (Status.ERROR.equals(finalStatus) || Status.UNKNOWN.equals(finalStatus)) {
+            String result = getTaskResult(taskId);
+            message.append("\nThe result of the task on the server was:\n")
+                    .append(result);
+        }
+        return message.toString();
+    }
+
+    /**
+     * Logs the time between the end of the deployment task at the server and the plugin
+     * noticing that the application was running. Only meaningful when the clocks of the
+     * server and the build agree, as they do for servers started by the start-server goal.
+     */
+    private void logDetectionLag(String taskId, long detectedAt) {
+        try {
+            TaskSummary summary = getApi().getActivityApi().get(taskId);
+            if (summary != null && summary.getEndTimeUtc() != null) {
+                long lag = detectedAt - summary.getEndTimeUtc();
+                getLog().debug("Deployment task " + taskId + " ended " + Duration.millis(lag) +
+                        " before the application was seen to be running (poll strategy: " +
+                        getPollStrategy() + ", period: " + getPollPeriod() + ")");
+            } else {
+                getLog().debug("Server did not report an end time for deployment task " + taskId);
             }
-            throw new MojoFailureException(message.toString());
+        } catch (Exception e) {
+            getLog().debug("Unable to determine end time of deployment task " + taskId, e);
         }
     }
 
@@ -201,8 +676,7 @@ public class DeployBlueprintMojo extends AbstractInvokeBrooklynMojo {
 
     private String readFile(File file) throws MojoFailureException {
         try {
-            List<String> lines = Files.readLines(file, Charset.forName(blueprintEncoding));
-            return Joiner.on('\n').join(lines);
+            return Blueprints.read(file.toPath(), Charset.forName(blueprintEncoding));
         } catch (Exception e) {
             throw new MojoFailureException("Failed to load " + file.getAbsolutePath(), e);
         }
@@ -210,13 +684,21 @@ public class DeployBlueprintMojo extends AbstractInvokeBrooklynMojo {
 
     private String readUrl(String blueprint) throws MojoFailureException {
         try {
-            CharSource source = Resources.asCharSource(new URL(blueprint), Charset.forName(blueprintEncoding));
-            return Joiner.on("\n").join(source.readLines());
+            return getBlueprintCache().get(new URL(blueprint), Charset.forName(blueprintEncoding));
         } catch (Exception e) {
             throw new MojoFailureException("Failed to load " + blueprint, e);
         }
     }
 
+    private synchronized BlueprintCache getBlueprintCache() {
+        if (blueprintCache == null) {
+            blueprintCache = new BlueprintCache(
+                    blueprintCacheDirectory != null ? blueprintCacheDirectory.toPath() : null,
+                    blueprintCacheTtl, blueprintConnectTimeout, blueprintReadTimeout, TimeUnit.SECONDS, getLog());
+        }
+        return blueprintCache;
+    }
+
     void setBlueprintEncoding(String encoding) {
         this.blueprintEncoding = encoding;
     }
@@ -225,8 +707,40 @@ public class DeployBlueprintMojo extends AbstractInvokeBrooklynMojo {
         this.waitForRunning = false;
     }
 
+    void setBlueprints(List<String> blueprints) {
+        this.blueprints = blueprints;
+    }
+
+    void setMaxConcurrentDeployments(int maxConcurrentDeployments) {
+        this.maxConcurrentDeployments = maxConcurrentDeployments;
+    }
+
     void setNoStopAppOnDeployError() {
         this.stopAppOnDeployError = false;
     }
 
+    void setInterpolateBlueprints() {
+        this.interpolateBlueprints = true;
+    }
+
+    void setValidateBlueprints() {
+        this.validateBlueprints = true;
+    }
+
+    void setReuseDeployments(File records) {
+        this.reuseDeployments = true;
+        this.deploymentRecords = records;
+    }
+
+    /** An application created or reused by the goal. */
+    private static class Deployment {
+        final String application;
+        /** The ID of the task that deployed the application, or null if it was reused. */
+        final String task;
+        private Deployment(String application, String task) {
+            this.application = application;
+            this.task = task;
+        }
+    }
+
 }
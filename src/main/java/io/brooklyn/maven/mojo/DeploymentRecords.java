@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.mojo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Records the application deployed for each blueprint so that later builds can reuse it.
+ * Records are keyed by a hash of the blueprint and the server it was deployed to and are
+ * kept in a properties file, normally in the plugin's work directory.
+ */
+class DeploymentRecords {
+
+    private final Path file;
+    private Properties records;
+
+    DeploymentRecords(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return The ID of the application recorded for the given hash, or null.
+     */
+    synchronized String get(String hash) throws IOException {
+        return load().getProperty(hash);
+    }
+
+    /**
+     * Records that the application with the given ID was deployed for the given hash.
+     */
+    synchronized void put(String hash, String application) throws IOException {
+        load().setProperty(hash, application);
+        save();
+    }
+
+    /**
+     * Forgets the application recorded for the given hash.
+     */
+    synchronized void remove(String hash) throws IOException {
+        if (load().remove(hash) != null) {
+            save();
+        }
+    }
+
+    private Properties load() throws IOException {
+        if (records == null) {
+            records = new Properties();
+            if (Files.isRegularFile(file)) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    records.load(in);
+                }
+            }
+        }
+        return records;
+    }
+
+    private void save() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                records.store(out, "Applications deployed by the brooklyn-maven-plugin's deploy goal");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+}
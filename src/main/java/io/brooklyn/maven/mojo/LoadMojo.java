@@ -0,0 +1,470 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.mojo;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.core.Response;
+
+import org.apache.brooklyn.util.collections.Jsonya;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.brooklyn.maven.metrics.LatencyHistogram;
+
+/**
+ * Send requests to a deployed application at a steady rate and report their latency
+ * and throughput. Requests either invoke {@link #effector an effector} or fetch the
+ * URLs that are the values of {@link #urlSensor a sensor}, shared in turn between
+ * every entity with a value.
+ * <p/>
+ * Requests are started at {@link #rate} per second regardless of how long earlier
+ * requests take, with at most {@link #concurrency} outstanding. Each latency is measured
+ * from the time its request was due to start, so time spent waiting for a free slot
+ * when the application cannot keep up is counted rather than hidden.
+ * <p/>
+ * The report is written to {@link #reportFile} as JSON. The build fails if the report
+ * breaches {@link #maxLatencyMillis} or {@link #maxErrorRate}.
+ */
+@Mojo(name = "load",
+        defaultPhase = LifecyclePhase.INTEGRATION_TEST)
+public class LoadMojo extends AbstractInvokeBrooklynMojo {
+
+    private static final List<Double> REPORTED_PERCENTILES = ImmutableList.of(50.0, 90.0, 95.0, 99.0, 99.9);
+
+    /**
+     * The ID of the application to send requests to.
+     */
+    @Parameter(
+            required = true,
+            property = "brooklyn.app")
+    private String application;
+
+    /**
+     * The effector to invoke. Either this or {@link #urlSensor} must be set.
+     */
+    @Parameter(property = "brooklyn.load.effector")
+    private String effector;
+
+    /**
+     * The ID of the entity whose {@link #effector} is invoked. Defaults to the application.
+     */
+    @Parameter(property = "brooklyn.load.entity")
+    private String entity;
+
+    /**
+     * Parameters given to each invocation of {@link #effector}.
+     */
+    @Parameter
+    private Map<String, String> effectorParameters;
+
+    /**
+     * A sensor whose values are the URLs to fetch.
+     */
+    @Parameter(property = "brooklyn.load.urlSensor")
+    private String urlSensor;
+
+    /**
+     * Regular expression to match the types of the entities whose {@link #urlSensor} is read.
+     */
+    @Parameter(
+            property = "brooklyn.entityTypeRegex",
+            defaultValue = ".*")
+    private String typeRegex;
+
+    /**
+     * The number of requests started each second.
+     */
+    @Parameter(
+            property = "brooklyn.load.rate",
+            defaultValue = "10")
+    private double rate;
+
+    /**
+     * The maximum number of requests outstanding at once.
+     */
+    @Parameter(
+            property = "brooklyn.load.concurrency",
+            defaultValue = "4")
+    private int concurrency;
+
+    /**
+     * The period for which requests are started.
+     */
+    @Parameter(
+            property = "brooklyn.load.duration",
+            defaultValue = "30")
+    private long loadDuration;
+
+    /**
+     * The unit associated with {@link #loadDuration}.
+     */
+    @Parameter(
+            property = "brooklyn.load.durationUnit",
+            defaultValue = "SECONDS")
+    private TimeUnit loadDurationUnit;
+
+    /**
+     * The file to write the report to.
+     */
+    @Parameter(
+            property = "brooklyn.load.reportFile",
+            defaultValue = "${project.build.directory}/brooklyn-maven-plugin/load-report.json")
+    private File reportFile;
+
+    /**
+     * Fail the build if the {@link #latencyPercentile} latency is longer than this.
+     */
+    @Parameter(property = "brooklyn.load.maxLatencyMillis")
+    private Double maxLatencyMillis;
+
+    /**
+     * The percentile of latencies compared with {@link #maxLatencyMillis}.
+     */
+    @Parameter(
+            property = "brooklyn.load.latencyPercentile",
+            defaultValue = "95")
+    private double latencyPercentile;
+
+    /**
+     * Fail the build if the proportion of requests that fail, between 0 and 1, is greater than this.
+     */
+    @Parameter(property = "brooklyn.load.maxErrorRate")
+    private Double maxErrorRate;
+
+    /**
+     * Constructor for use by Maven/Guice.
+     */
+    LoadMojo() {
+        this(null, null, null);
+    }
+
+    public LoadMojo(URL server, String application, File reportFile) {
+        super(server);
+        this.application = application;
+        this.reportFile = reportFile;
+        this.typeRegex = ".*";
+        this.rate = 10;
+        this.concurrency = 4;
+        this.loadDuration = 30;
+        this.loadDurationUnit = TimeUnit.SECONDS;
+        this.latencyPercentile = 95;
+    }
+
+    @Override
+    public void doIt() throws MojoFailureException {
+        if (skipExecution()) {
+            getLog().info("Tests are skipped.");
+            return;
+        }
+        if ((effector == null) == (urlSensor == null)) {
+            throw new MojoFailureException("Exactly one of effector and urlSensor must be configured");
+        } else if (rate <= 0 || concurrency <= 0) {
+            throw new MojoFailureException("rate and concurrency must be positive");
+        }
+        try {
+            String target;
+            Callable<Boolean> request;
+            if (effector != null) {
+                String entityId = entity != null ? entity : application;
+                target = "effector " + effector + " of " + entityId;
+                request = newEffectorRequest(entityId);
+            } else {
+                List<URL> urls = getUrls();
+                target = Joiner.on(", ").join(urls);
+                request = newUrlRequest(urls);
+            }
+            Duration duration = Duration.of(loadDuration, loadDurationUnit);
+            getLog().info("Sending " + rate + " requests per second to " + target + " for " + duration +
+                    ", at most " + concurrency + " at once");
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            LoadResult result = drive(request, duration);
+            recordPhase("load", stopwatch);
+            getLog().info(result.toString());
+            write(target, result);
+            List<String> breaches = checkObjectives(result);
+            if (!breaches.isEmpty()) {
+                throw new MojoFailureException("Load on " + target + " breached objectives:\n" +
+                        Joiner.on('\n').join(breaches));
+            }
+        } catch (Exception e) {
+            if (getForker() != null && shouldTearDownOnFailure()) {
+                getForker().cleanUpProject(getProjectId());
+            }
+            throw e;
+        }
+    }
+
+    private Callable<Boolean> newEffectorRequest(final String entityId) {
+        final Map<String, Object> parameters = Maps.newLinkedHashMap();
+        if (effectorParameters != null) {
+            parameters.putAll(effectorParameters);
+        }
+        final String timeout = String.valueOf(getTimeout().toMilliseconds());
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                Response response = getApi().getEffectorApi().invoke(application, entityId, effector, timeout, parameters);
+                try {
+                    return !isUnhealthyResponse(response);
+                } finally {
+                    response.close();
+                }
+            }
+        };
+    }
+
+    private List<URL> getUrls() throws MojoFailureException {
+        Map<String, Object> values = getApi().getEntityApi().getDescendantsSensor(
+                application, application, urlSensor, typeRegex);
+        List<URL> urls = Lists.newArrayList();
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            if (value.getValue() == null) {
+                continue;
+            }
+            try {
+                urls.add(new URL(value.getValue().toString()));
+            } catch (IOException e) {
+                throw new MojoFailureException("Value of " + urlSensor + " on " + value.getKey() + " is not a URL: " +
+                        value.getValue(), e);
+            }
+        }
+        if (urls.isEmpty()) {
+            throw new MojoFailureException("No entities in " + application + " matching " + typeRegex +
+                    " have a value for " + urlSensor);
+        }
+        return urls;
+    }
+
+    private Callable<Boolean> newUrlRequest(final List<URL> urls) {
+        final AtomicInteger next = new AtomicInteger();
+        final int timeout = (int) getTimeout().toMilliseconds();
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                URL url = urls.get((next.getAndIncrement() & Integer.MAX_VALUE) % urls.size());
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                connection.setConnectTimeout(timeout);
+                connection.setReadTimeout(timeout);
+                connection.setUseCaches(false);
+                int status = connection.getResponseCode();
+                InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+                if (in != null) {
+                    // Read the body so the connection can be reused.
+                    try {
+                        ByteStreams.copy(in, ByteStreams.nullOutputStream());
+                    } finally {
+                        in.close();
+                    }
+                }
+                return status < 400;
+            }
+        };
+    }
+
+    /**
+     * Starts the given request at {@link #rate} per second for the given duration, then
+     * waits up to the configured timeout for outstanding requests to complete.
+     */
+    private LoadResult drive(final Callable<Boolean> request, Duration duration) throws MojoFailureException {
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        final Semaphore slots = new Semaphore(concurrency);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+                .setNameFormat("brooklyn-load-%d")
+                .setDaemon(true)
+                .build());
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long end = start + duration.toNanoseconds();
+        long sent = 0;
+        try {
+            for (long due = start; due < end; due += Math.max(interval, 1)) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                slots.acquire();
+                final long scheduled = due;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        boolean succeeded = false;
+                        try {
+                            succeeded = request.call();
+                        } catch (Exception e) {
+                            Exceptions.propagateIfFatal(e);
+                            getLog().debug("Request failed: " + e);
+                        } finally {
+                            latencies.record(System.nanoTime() - scheduled, TimeUnit.NANOSECONDS);
+                            if (!succeeded) {
+                                errors.incrementAndGet();
+                            }
+                            slots.release();
+                        }
+                    }
+                });
+                sent++;
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(getTimeout().toMilliseconds(), TimeUnit.MILLISECONDS)) {
+                throw new MojoFailureException((sent - latencies.getCount()) + " of " + sent +
+                        " requests did not complete within " + getTimeout());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Exceptions.propagate(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return new LoadResult(latencies, errors.get(), System.nanoTime() - start);
+    }
+
+    private List<String> checkObjectives(LoadResult result) {
+        List<String> breaches = Lists.newArrayList();
+        if (maxLatencyMillis != null) {
+            double latency = result.latencies.getValueAtPercentile(latencyPercentile) / 1000.0;
+            if (latency > maxLatencyMillis) {
+                breaches.add(String.format("p%s latency %.1fms is longer than %.1fms",
+                        percentileName(latencyPercentile), latency, maxLatencyMillis));
+            }
+        }
+        if (maxErrorRate != null && result.errorRate() > maxErrorRate) {
+            breaches.add(String.format("error rate %.4f is greater than %.4f", result.errorRate(), maxErrorRate));
+        }
+        return breaches;
+    }
+
+    private void write(String target, LoadResult result) throws MojoFailureException {
+        Map<String, Object> latency = Maps.newLinkedHashMap();
+        for (Double percentile : REPORTED_PERCENTILES) {
+            latency.put("p" + percentileName(percentile) + "Millis",
+                    result.latencies.getValueAtPercentile(percentile) / 1000.0);
+        }
+        latency.put("meanMillis", result.latencies.getMean() / 1000.0);
+        latency.put("maxMillis", result.latencies.getMax() / 1000.0);
+        Map<String, Object> report = Maps.newLinkedHashMap();
+        report.put("application", application);
+        report.put("target", target);
+        report.put("targetRate", rate);
+        report.put("concurrency", concurrency);
+        report.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos));
+        report.put("requests", result.latencies.getCount());
+        report.put("errors", result.errors);
+        report.put("throughputPerSecond", result.throughput());
+        report.put("latency", latency);
+
+        Path file = reportFile.toPath().toAbsolutePath();
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, Jsonya.render(report).getBytes(Charsets.UTF_8));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new MojoFailureException("Could not write load report to " + file, e);
+        }
+    }
+
+    private static String percentileName(double percentile) {
+        return percentile == Math.rint(percentile)
+                ? String.valueOf((long) percentile)
+                : String.valueOf(percentile);
+    }
+
+    private static class LoadResult {
+        final LatencyHistogram latencies;
+        final long errors;
+        final long elapsedNanos;
+
+        LoadResult(LatencyHistogram latencies, long errors, long elapsedNanos) {
+            this.latencies = latencies;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double errorRate() {
+            return latencies.getCount() == 0 ? 0 : (double) errors / latencies.getCount();
+        }
+
+        double throughput() {
+            return elapsedNanos == 0 ? 0 : latencies.getCount() * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests, %d errors, %.1f per second. Latency p50 %.1fms, p99 %.1fms, max %.1fms",
+                    latencies.getCount(), errors, throughput(), latencies.getValueAtPercentile(50) / 1000.0,
+                    latencies.getValueAtPercentile(99) / 1000.0, latencies.getMax() / 1000.0);
+        }
+    }
+
+    void setEffector(String effector, Map<String, String> parameters) {
+        this.effector = checkNotNull(effector, "effector");
+        this.effectorParameters = parameters;
+    }
+
+    void setUrlSensor(String urlSensor) {
+        this.urlSensor = checkNotNull(urlSensor, "urlSensor");
+    }
+
+    void setLoad(double rate, int concurrency, long duration, TimeUnit unit) {
+        this.rate = rate;
+        this.concurrency = concurrency;
+        this.loadDuration = duration;
+        this.loadDurationUnit = checkNotNull(unit, "unit");
+    }
+
+    void setObjectives(Double maxLatencyMillis, double latencyPercentile, Double maxErrorRate) {
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.latencyPercentile = latencyPercentile;
+        this.maxErrorRate = maxErrorRate;
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.mojo;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Finds free ports for forked servers and reserves them until the servers have bound them.
+ * <p/>
+ * A candidate port is found by binding a socket to an ephemeral port on all interfaces.
+ * It is reserved by locking a file named after it in a directory shared by every build
+ * on the machine, so concurrent builds, and the threads of a parallel build, never choose
+ * the same port for servers that are still starting. Candidates that are already reserved
+ * are skipped, up to {@link #MAX_ATTEMPTS} times.
+ */
+class PortAllocator {
+
+    /** The number of candidate ports tried before giving up. */
+    static final int MAX_ATTEMPTS = 20;
+
+    /**
+     * Ports reserved by this JVM. File locks are held on behalf of the whole JVM so
+     * do not exclude its other threads.
+     */
+    private static final Set<Integer> RESERVED = Sets.newHashSet();
+
+    private final Path directory;
+    private final Log log;
+
+    PortAllocator(Path directory, Log log) {
+        this.directory = directory;
+        this.log = log;
+    }
+
+    /**
+     * @return A reservation of a port that was free when this method was called.
+     * @throws IOException if no port could be reserved.
+     */
+    Reservation reserve() throws IOException {
+        Files.createDirectories(directory);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int port = probe();
+            Reservation reservation = tryReserve(port);
+            if (reservation != null) {
+                log.debug("Reserved port " + port + " with " + reservation.file);
+                return reservation;
+            }
+            log.debug("Port " + port + " is reserved by another build, trying another");
+        }
+        throw new IOException("Could not reserve a port in " + MAX_ATTEMPTS + " attempts. Reservations are in " +
+                directory);
+    }
+
+    private int probe() throws IOException {
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            channel.bind(new InetSocketAddress(0));
+            return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        }
+    }
+
+    /**
+     * @return A reservation of the given port, or null if it is reserved already.
+     */
+    Reservation tryReserve(int port) throws IOException {
+        synchronized (RESERVED) {
+            if (!RESERVED.add(port)) {
+                return null;
+            }
+        }
+        Path file = directory.resolve("port-" + port + ".lock");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = null;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held elsewhere in this JVM, by a class loaded by another class loader.
+        } finally {
+            if (lock == null) {
+                channel.close();
+                synchronized (RESERVED) {
+                    RESERVED.remove(port);
+                }
+            }
+        }
+        return lock != null ? new Reservation(port, file, lock) : null;
+    }
+
+    /**
+     * A port reserved for a forked server. Lock files are left in place when reservations
+     * are released: deleting them could let two builds lock different files for the same port.
+     */
+    static class Reservation {
+        private final int port;
+        private final Path file;
+        private FileLock lock;
+
+        private Reservation(int port, Path file, FileLock lock) {
+            this.port = port;
+            this.file = file;
+            this.lock = lock;
+        }
+
+        int getPort() {
+            return port;
+        }
+
+        /**
+         * Releases the reservation. Has no effect if it has been released already.
+         */
+        synchronized void release() {
+            if (lock == null) {
+                return;
+            }
+            try {
+                lock.channel().close();
+            } catch (IOException e) {
+                // Closing the channel releases the lock regardless.
+            } finally {
+                lock = null;
+                synchronized (RESERVED) {
+                    RESERVED.remove(port);
+                }
+            }
+        }
+    }
+
+}
@@ -16,20 +16,42 @@
 package io.brooklyn.maven.mojo;
 
 import java.net.URL;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.brooklyn.rest.domain.Status;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.repeat.Repeater;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import io.brooklyn.maven.poll.SensorCondition;
 
 /**
  * Fetch the value of a sensor on entities at a given server whose types
- * match a regular expression.
+ * match a regular expression. Several sensors can be fetched at once by
+ * configuring {@link #sensors}.
+ * <p/>
+ * Setting any of {@link #awaitValue}, {@link #awaitRegex}, {@link #awaitAtLeast} and
+ * {@link #awaitAtMost} makes the goal poll the sensors until their values satisfy the
+ * condition or {@link #timeout} passes.
  */
 @Mojo(name = "sensor",
         defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST)
@@ -44,13 +66,39 @@ public class QuerySensorMojo extends AbstractInvokeBrooklynMojo {
     private String application;
 
     /**
-     * The name of the sensor to query.
+     * The name of the sensor to query. Ignored if {@link #sensors} is configured.
      */
-    @Parameter(
-            required = true,
-            property = "brooklyn.sensor")
+    @Parameter(property = "brooklyn.sensor")
     private String sensor;
 
+    /**
+     * Sensors to query concurrently, each setting its own property. For example:
+     * <pre>
+     * &lt;sensors&gt;
+     *   &lt;sensorQuery&gt;
+     *     &lt;sensor&gt;host.address&lt;/sensor&gt;
+     *     &lt;property&gt;server.address&lt;/property&gt;
+     *     &lt;typeRegex&gt;.*SoftwareProcess&lt;/typeRegex&gt;
+     *   &lt;/sensorQuery&gt;
+     *   &lt;sensorQuery&gt;
+     *     &lt;sensor&gt;service.state&lt;/sensor&gt;
+     *   &lt;/sensorQuery&gt;
+     * &lt;/sensors&gt;
+     * </pre>
+     * The property defaults to the name of the sensor and the type regex to
+     * {@link #typeRegex}.
+     */
+    @Parameter
+    private List<SensorQuery> sensors;
+
+    /**
+     * The maximum number of {@link #sensors} to query at once.
+     */
+    @Parameter(
+            property = "brooklyn.maxConcurrentQueries",
+            defaultValue = "4")
+    private int maxConcurrentQueries;
+
     /**
      * The property to set to the sensor's value.
      */
@@ -80,6 +128,51 @@ public class QuerySensorMojo extends AbstractInvokeBrooklynMojo {
     @Parameter(defaultValue = "false")
     private boolean waitForRunning;
 
+    /**
+     * Configure the plugin to skip {@link #waitForRunning waiting} for the application if an
+     * earlier execution of this goal in the same project saw that it was running.
+     */
+    @Parameter(
+            property = "brooklyn.reuseRunningCheck",
+            defaultValue = "false")
+    private boolean reuseRunningCheck;
+
+    /**
+     * Wait until the sensor's value is equal to this string.
+     */
+    @Parameter(property = "brooklyn.awaitValue")
+    private String awaitValue;
+
+    /**
+     * Wait until the sensor's value matches this regular expression.
+     */
+    @Parameter(property = "brooklyn.awaitRegex")
+    private String awaitRegex;
+
+    /**
+     * Wait until the sensor's value is a number no less than this.
+     */
+    @Parameter(property = "brooklyn.awaitAtLeast")
+    private Double awaitAtLeast;
+
+    /**
+     * Wait until the sensor's value is a number no greater than this.
+     */
+    @Parameter(property = "brooklyn.awaitAtMost")
+    private Double awaitAtMost;
+
+    /**
+     * Whether <code>ANY</code> or <code>ALL</code> of the entities matching the type regex
+     * must have a value satisfying the await condition. Each of {@link #sensors} is waited
+     * for independently and is no longer polled once satisfied. The delay between polls is
+     * determined by {@link #pollStrategy}: <code>EXPONENTIAL</code> polls quickly at first and
+     * suits sensors that are expected to change soon.
+     */
+    @Parameter(
+            property = "brooklyn.awaitMatch",
+            defaultValue = "ALL")
+    private SensorCondition.Match awaitMatch;
+
     /**
      * Constructor for use by Maven/Guice.
      */
@@ -93,6 +186,8 @@ public class QuerySensorMojo extends AbstractInvokeBrooklynMojo {
         this.sensor = sensor;
         this.sensorValueProperty = sensorValueProperty;
         this.typeRegex = typeRegex;
+        this.maxConcurrentQueries = 4;
+        this.awaitMatch = SensorCondition.Match.ALL;
     }
 
     @Override
@@ -101,38 +196,203 @@ public class QuerySensorMojo extends AbstractInvokeBrooklynMojo {
             getLog().info("Tests are skipped.");
             return;
         }
-        Map<String, Object> matches;
+        List<SensorQuery> queries;
+        if (sensors != null && !sensors.isEmpty()) {
+            queries = sensors;
+        } else if (sensor != null) {
+            queries = Collections.singletonList(new SensorQuery(sensor, sensorValueProperty, typeRegex));
+        } else {
+            throw new MojoFailureException("Either sensor or sensors must be configured");
+        }
+        Map<SensorQuery, Map<String, Object>> results;
         try {
             if (waitForRunning) {
-                waitForAppStatusOrThrow(application, Status.RUNNING);
+                waitForRunning();
+            }
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            SensorCondition condition = getAwaitCondition();
+            if (condition != null) {
+                results = await(queries, condition);
+                recordPhase("sensor-await", stopwatch);
+            } else {
+                results = query(queries);
+                recordPhase("sensor-fetch", stopwatch);
             }
-            matches = getApi().getEntityApi().getDescendantsSensor(
-                    application, application, sensor, typeRegex);
-            if (failIfNoMatches && matches.isEmpty()) {
-                throw new MojoFailureException("No entities in " + application + " matching " + typeRegex +
-                        " have a value for " + sensor);
+            if (failIfNoMatches) {
+                List<String> failures = Lists.newArrayList();
+                for (Map.Entry<SensorQuery, Map<String, Object>> result : results.entrySet()) {
+                    if (result.getValue().isEmpty()) {
+                        failures.add("No entities in " + application + " matching " + typeRegex(result.getKey()) +
+                                " have a value for " + result.getKey().getSensor());
+                    }
+                }
+                if (!failures.isEmpty()) {
+                    throw new MojoFailureException(Joiner.on('\n').join(failures));
+                }
             }
         } catch (Exception e) {
             if (getForker() != null && shouldTearDownOnFailure()) {
-                getForker().cleanUp();
+                getForker().cleanUpProject(getProjectId());
             }
             throw e;
         }
-        getLog().info("Matches: " + Joiner.on(", ").withKeyValueSeparator("=").join(matches));
-        String value;
+        for (Map.Entry<SensorQuery, Map<String, Object>> result : results.entrySet()) {
+            setProperty(result.getKey(), result.getValue());
+        }
+    }
+
+    private void waitForRunning() throws MojoFailureException {
+        String key = "brooklyn.running." + server + "/" + application;
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> context = getPluginContext();
+        if (reuseRunningCheck && context != null && Boolean.TRUE.equals(context.get(key))) {
+            getLog().debug("Application " + application + " was running in an earlier execution, not waiting again");
+            return;
+        }
+        waitForAppStatusOrThrow(application, Status.RUNNING);
+        if (context != null) {
+            context.put(key, Boolean.TRUE);
+        }
+    }
+
+    private SensorCondition getAwaitCondition() {
+        if (awaitValue == null && awaitRegex == null && awaitAtLeast == null && awaitAtMost == null) {
+            return null;
+        }
+        return new SensorCondition(awaitValue, awaitRegex, awaitAtLeast, awaitAtMost, awaitMatch);
+    }
+
+    /**
+     * Polls the given sensors until the values of each satisfy the condition. Each poll
+     * queries only the sensors that have not yet done so.
+     * @return The last values polled for each sensor.
+     * @throws MojoFailureException if a sensor's values do not satisfy the condition
+     *      within the configured timeout.
+     */
+    private Map<SensorQuery, Map<String, Object>> await(List<SensorQuery> queries, final SensorCondition condition)
+            throws MojoFailureException {
+        final Map<SensorQuery, Map<String, Object>> results = Maps.newLinkedHashMap();
+        final List<SensorQuery> pending = Lists.newArrayList(queries);
+        final AtomicInteger polls = new AtomicInteger();
+        getLog().info("Waiting " + getTimeout() + " for " + Joiner.on(", ").join(queries) + " to be " + condition);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        boolean satisfied = Repeater.create("Waiting for sensors to be " + condition)
+                .delayOnIteration(getPollStrategy().delays(getPollPeriod()))
+                .limitTimeTo(getTimeout())
+                .rethrowExceptionImmediately()
+                .until(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        polls.incrementAndGet();
+                        for (Map.Entry<SensorQuery, Map<String, Object>> result : query(pending).entrySet()) {
+                            getLog().debug("Values of " + result.getKey().getSensor() + ": " + result.getValue());
+                            results.put(result.getKey(), result.getValue());
+                            if (condition.isSatisfiedBy(result.getValue())) {
+                                pending.remove(result.getKey());
+                            }
+                        }
+                        return pending.isEmpty();
+                    }
+                })
+                .run();
+        if (!satisfied) {
+            List<String> failures = Lists.newArrayList();
+            for (SensorQuery query : pending) {
+                failures.add(query.getSensor() + " on entities in " + application + " matching " + typeRegex(query) +
+                        " is not " + condition + " within " + getTimeout() + ". Values: " + results.get(query));
+            }
+            throw new MojoFailureException(Joiner.on('\n').join(failures));
+        }
+        getLog().info("Sensors are " + condition + " after " + stopwatch + " and " + polls.get() + " polls");
+        return results;
+    }
+
+    /**
+     * Fetches the values of the given sensors, querying at most {@link #maxConcurrentQueries} at once.
+     */
+    private Map<SensorQuery, Map<String, Object>> query(List<SensorQuery> queries) {
+        if (queries.size() == 1) {
+            SensorQuery query = queries.get(0);
+            return ImmutableMap.of(query, query(query));
+        }
+        int threads = Math.max(1, Math.min(maxConcurrentQueries, queries.size()));
+        getLog().debug("Querying " + queries.size() + " sensors, at most " + threads + " at once");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Map<SensorQuery, Future<Map<String, Object>>> submissions = Maps.newLinkedHashMap();
+            for (final SensorQuery query : queries) {
+                submissions.put(query, executor.submit(new Callable<Map<String, Object>>() {
+                    @Override
+                    public Map<String, Object> call() throws Exception {
+                        return query(query);
+                    }
+                }));
+            }
+            Map<SensorQuery, Map<String, Object>> results = Maps.newLinkedHashMap();
+            for (Map.Entry<SensorQuery, Future<Map<String, Object>>> submission : submissions.entrySet()) {
+                try {
+                    results.put(submission.getKey(), submission.getValue().get());
+                } catch (ExecutionException e) {
+                    throw Exceptions.propagate(e.getCause() != null ? e.getCause() : e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw Exceptions.propagate(e);
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, Object> query(SensorQuery query) {
+        return getApi().getEntityApi().getDescendantsSensor(
+                application, application, query.getSensor(), typeRegex(query));
+    }
+
+    private String typeRegex(SensorQuery query) {
+        return query.getTypeRegex() != null ? query.getTypeRegex() : typeRegex;
+    }
+
+    private void setProperty(SensorQuery query, Map<String, Object> matches) {
+        getLog().info("Matches for " + query.getSensor() + ": " + Joiner.on(", ").withKeyValueSeparator("=").join(matches));
+        String value = formatValue(matches);
+        getLog().debug("Setting " + query.getProperty() + " to " + value);
+        getProject().getProperties().setProperty(query.getProperty(), value);
+    }
+
+    /**
+     * @return The only value in matches or a list of all of the values.
+     */
+    @VisibleForTesting
+    static String formatValue(Map<String, Object> matches) {
         if (matches.keySet().size() == 1) {
-            value = Iterables.getOnlyElement(matches.values()).toString();
+            return Iterables.getOnlyElement(matches.values()).toString();
         } else {
-            value = Iterables.toString(matches.values());
+            return Iterables.toString(matches.values());
         }
-        getLog().debug("Setting " + sensorValueProperty + " to " + value);
-        getProject().getProperties().setProperty(sensorValueProperty, value);
+    }
+
+    void setSensors(List<SensorQuery> sensors) {
+        this.sensors = sensors;
+    }
+
+    void setReuseRunningCheck() {
+        this.reuseRunningCheck = true;
     }
 
     void setWaitForRunning() {
         this.waitForRunning = true;
     }
 
+    void setAwaitCondition(String value, String regex, Double atLeast, Double atMost, SensorCondition.Match match) {
+        this.awaitValue = value;
+        this.awaitRegex = regex;
+        this.awaitAtLeast = atLeast;
+        this.awaitAtMost = atMost;
+        this.awaitMatch = match;
+    }
+
     void setFailIfNoMatches() {
         this.failIfNoMatches = true;
     }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.mojo;
+
+/**
+ * A sensor to read and the property to set to its value. Configured in the
+ * <code>sensors</code> list of the sensor goal:
+ * <pre>
+ * &lt;sensorQuery&gt;
+ *   &lt;sensor&gt;host.address&lt;/sensor&gt;
+ *   &lt;property&gt;host.address&lt;/property&gt;
+ *   &lt;typeRegex&gt;.*SoftwareProcess&lt;/typeRegex&gt;
+ * &lt;/sensorQuery&gt;
+ * </pre>
+ */
+public class SensorQuery {
+
+    /** The name of the sensor to query. */
+    private String sensor;
+
+    /** The property to set to the sensor's value. Defaults to the name of the sensor. */
+    private String property;
+
+    /** Regular expression to match entities by type. Defaults to the goal's entityTypeRegex. */
+    private String typeRegex;
+
+    public SensorQuery() {
+    }
+
+    public SensorQuery(String sensor, String property, String typeRegex) {
+        this.sensor = sensor;
+        this.property = property;
+        this.typeRegex = typeRegex;
+    }
+
+    public String getSensor() {
+        return sensor;
+    }
+
+    public String getProperty() {
+        return property != null ? property : sensor;
+    }
+
+    public String getTypeRegex() {
+        return typeRegex;
+    }
+
+    @Override
+    public String toString() {
+        return sensor + (typeRegex != null ? " on " + typeRegex : "") + " -> " + getProperty();
+    }
+
+}
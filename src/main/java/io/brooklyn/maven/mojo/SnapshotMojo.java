@@ -0,0 +1,335 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.rest.domain.EntitySummary;
+import org.apache.brooklyn.util.collections.Jsonya;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Maps;
+
+/**
+ * Write the current value of every sensor of every entity in an application to a
+ * single file. The application's entity tree is walked concurrently, fetching the
+ * children and sensors of at most {@link #maxConcurrentRequests} entities at once.
+ * Entities whose types do not match {@link #typeRegex} are walked but not included.
+ * <p/>
+ * The snapshot is written as JSON unless {@link #snapshotFile} ends in
+ * <code>.properties</code>, in which case each sensor is written as a property named
+ * <code>&lt;entity id&gt;.sensors.&lt;sensor name&gt;</code>.
+ */
+@Mojo(name = "snapshot",
+        defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST)
+public class SnapshotMojo extends AbstractInvokeBrooklynMojo {
+
+    private static final String PROPERTIES_SUFFIX = ".properties";
+
+    /**
+     * The ID of the application whose entities should be snapshotted.
+     */
+    @Parameter(
+            required = true,
+            property = "brooklyn.app")
+    private String application;
+
+    /**
+     * Regular expression to match the names of the sensors to include.
+     */
+    @Parameter(
+            property = "brooklyn.sensorRegex",
+            defaultValue = ".*")
+    private String sensorRegex;
+
+    /**
+     * Regular expression to match the types of the entities to include.
+     */
+    @Parameter(
+            property = "brooklyn.entityTypeRegex",
+            defaultValue = ".*")
+    private String typeRegex;
+
+    /**
+     * The maximum number of entities whose children and sensors are fetched at once.
+     */
+    @Parameter(
+            property = "brooklyn.maxConcurrentRequests",
+            defaultValue = "8")
+    private int maxConcurrentRequests;
+
+    /**
+     * Sets whether sensor values are written as the server stores them rather than
+     * as they are displayed.
+     */
+    @Parameter(
+            property = "brooklyn.rawSensors",
+            defaultValue = "true")
+    private boolean raw;
+
+    /**
+     * The file to write the snapshot to.
+     */
+    @Parameter(
+            property = "brooklyn.snapshotFile",
+            defaultValue = "${project.build.directory}/brooklyn-maven-plugin/snapshot.json")
+    private File snapshotFile;
+
+    /**
+     * The property to set to the path of {@link #snapshotFile}.
+     */
+    @Parameter(defaultValue = "brooklyn.snapshot")
+    private String snapshotProperty;
+
+    /**
+     * Constructor for use by Maven/Guice.
+     */
+    SnapshotMojo() {
+        this(null, null, null);
+    }
+
+    public SnapshotMojo(URL server, String application, File snapshotFile) {
+        super(server);
+        this.application = application;
+        this.snapshotFile = snapshotFile;
+        this.sensorRegex = ".*";
+        this.typeRegex = ".*";
+        this.maxConcurrentRequests = 8;
+        this.raw = true;
+        this.snapshotProperty = "brooklyn.snapshot";
+    }
+
+    @Override
+    public void doIt() throws MojoFailureException {
+        if (skipExecution()) {
+            getLog().info("Tests are skipped.");
+            return;
+        }
+        try {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            long started = System.currentTimeMillis();
+            Map<String, EntitySnapshot> entities = snapshot();
+            long completed = System.currentTimeMillis();
+            recordPhase("snapshot-fetch", stopwatch);
+            write(entities, started, completed);
+            getLog().info("Wrote " + entities.size() + " entities of " + application + " to " + snapshotFile +
+                    " in " + Duration.millis(stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+        } catch (Exception e) {
+            if (getForker() != null && shouldTearDownOnFailure()) {
+                getForker().cleanUpProject(getProjectId());
+            }
+            throw e;
+        }
+        if (getProject() != null && snapshotProperty != null) {
+            getProject().getProperties().setProperty(snapshotProperty, snapshotFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Walks the application's entity tree, submitting each entity's children as soon as
+     * they are known.
+     * @return Snapshots of the entities whose types match {@link #typeRegex}, in the order
+     *      they were reached.
+     */
+    private Map<String, EntitySnapshot> snapshot() throws MojoFailureException {
+        final Pattern types = Pattern.compile(typeRegex);
+        final Pattern sensors = Pattern.compile(sensorRegex);
+        EntitySummary root = getApi().getEntityApi().get(application, application);
+        int threads = Math.max(1, maxConcurrentRequests);
+        getLog().debug("Snapshotting " + application + ", fetching at most " + threads + " entities at once");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<EntitySnapshot> completion = new ExecutorCompletionService<>(executor);
+        long deadline = System.nanoTime() + getTimeout().toNanoseconds();
+        try {
+            completion.submit(new FetchEntity(root, null, types, sensors));
+            int pending = 1;
+            Map<String, EntitySnapshot> entities = Maps.newLinkedHashMap();
+            while (pending > 0) {
+                Future<EntitySnapshot> next = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    throw new MojoFailureException("Snapshot of " + application + " did not complete within " +
+                            getTimeout() + ". " + entities.size() + " entities fetched, " + pending + " pending");
+                }
+                pending--;
+                EntitySnapshot entity = next.get();
+                for (EntitySummary child : entity.children) {
+                    completion.submit(new FetchEntity(child, entity.summary.getId(), types, sensors));
+                    pending++;
+                }
+                if (entity.sensors != null) {
+                    entities.put(entity.summary.getId(), entity);
+                }
+            }
+            return entities;
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e.getCause() != null ? e.getCause() : e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Exceptions.propagate(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private class FetchEntity implements Callable<EntitySnapshot> {
+        private final EntitySummary summary;
+        private final String parent;
+        private final Pattern types;
+        private final Pattern sensors;
+
+        FetchEntity(EntitySummary summary, @Nullable String parent, Pattern types, Pattern sensors) {
+            this.summary = summary;
+            this.parent = parent;
+            this.types = types;
+            this.sensors = sensors;
+        }
+
+        @Override
+        public EntitySnapshot call() throws Exception {
+            List<EntitySummary> children = getApi().getEntityApi().getChildren(application, summary.getId());
+            Map<String, Object> values = null;
+            if (summary.getType() != null && types.matcher(summary.getType()).matches()) {
+                values = Maps.newTreeMap();
+                Map<String, Object> all = getApi().getSensorApi().batchSensorRead(application, summary.getId(), raw);
+                for (Map.Entry<String, Object> sensor : all.entrySet()) {
+                    if (sensors.matcher(sensor.getKey()).matches()) {
+                        values.put(sensor.getKey(), sensor.getValue());
+                    }
+                }
+            }
+            return new EntitySnapshot(summary, parent, children, values);
+        }
+    }
+
+    private void write(Map<String, EntitySnapshot> entities, long started, long completed) throws MojoFailureException {
+        Path file = snapshotFile.toPath().toAbsolutePath();
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    if (file.getFileName().toString().endsWith(PROPERTIES_SUFFIX)) {
+                        toProperties(entities, started, completed).store(out, "Snapshot of " + application);
+                    } else {
+                        out.write(toJson(entities, started, completed).getBytes(Charsets.UTF_8));
+                    }
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new MojoFailureException("Could not write snapshot of " + application + " to " + file, e);
+        }
+    }
+
+    private String toJson(Map<String, EntitySnapshot> entities, long started, long completed) {
+        Map<String, Object> entityMap = Maps.newLinkedHashMap();
+        for (EntitySnapshot entity : entities.values()) {
+            Map<String, Object> entry = Maps.newLinkedHashMap();
+            entry.put("name", entity.summary.getName());
+            entry.put("type", entity.summary.getType());
+            if (entity.parent != null) {
+                entry.put("parent", entity.parent);
+            }
+            entry.put("sensors", entity.sensors);
+            entityMap.put(entity.summary.getId(), entry);
+        }
+        Map<String, Object> snapshot = Maps.newLinkedHashMap();
+        snapshot.put("application", application);
+        snapshot.put("server", String.valueOf(server));
+        snapshot.put("startedMillis", started);
+        snapshot.put("completedMillis", completed);
+        snapshot.put("entities", entityMap);
+        return Jsonya.render(snapshot);
+    }
+
+    private Properties toProperties(Map<String, EntitySnapshot> entities, long started, long completed) {
+        Properties properties = new Properties();
+        properties.setProperty("application", application);
+        properties.setProperty("startedMillis", Long.toString(started));
+        properties.setProperty("completedMillis", Long.toString(completed));
+        for (EntitySnapshot entity : entities.values()) {
+            String prefix = entity.summary.getId() + ".";
+            properties.setProperty(prefix + "name", String.valueOf(entity.summary.getName()));
+            properties.setProperty(prefix + "type", String.valueOf(entity.summary.getType()));
+            if (entity.parent != null) {
+                properties.setProperty(prefix + "parent", entity.parent);
+            }
+            for (Map.Entry<String, Object> sensor : entity.sensors.entrySet()) {
+                properties.setProperty(prefix + "sensors." + sensor.getKey(), String.valueOf(sensor.getValue()));
+            }
+        }
+        return properties;
+    }
+
+    private static class EntitySnapshot {
+        final EntitySummary summary;
+        @Nullable
+        final String parent;
+        final List<EntitySummary> children;
+        /** Null if the entity's type does not match. */
+        @Nullable
+        final Map<String, Object> sensors;
+
+        EntitySnapshot(EntitySummary summary, @Nullable String parent, List<EntitySummary> children,
+                @Nullable Map<String, Object> sensors) {
+            this.summary = summary;
+            this.parent = parent;
+            this.children = children;
+            this.sensors = sensors;
+        }
+    }
+
+    void setSensorRegex(String sensorRegex) {
+        this.sensorRegex = sensorRegex;
+    }
+
+    void setTypeRegex(String typeRegex) {
+        this.typeRegex = typeRegex;
+    }
+
+    void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+}
@@ -15,24 +15,28 @@
  */
 package io.brooklyn.maven.mojo;
 
-import static org.twdata.maven.mojoexecutor.MojoExecutor.*;
-
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
-import org.apache.brooklyn.rest.api.ServerApi;
 import org.apache.brooklyn.rest.client.BrooklynApi;
-import org.apache.brooklyn.util.repeat.Repeater;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.text.Strings;
 import org.apache.brooklyn.util.time.Duration;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.repository.ArtifactRepository;
-import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -42,7 +46,11 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
+import io.brooklyn.maven.blueprint.Blueprints;
 import io.brooklyn.maven.fork.ForkOptions;
 import io.brooklyn.maven.fork.ForkedServer;
 import io.brooklyn.maven.fork.ProjectDependencySupplier;
@@ -57,20 +65,13 @@ import io.brooklyn.maven.fork.ProjectDependencySupplier;
 public class StartBrooklynMojo extends AbstractBrooklynMojo {
 
     private static final String SERVER_PORT_PROPERTY = "brooklyn.port";
-    private static final String PLUGIN_NAME = "brooklyn-maven-plugin";
 
     @Parameter(defaultValue = "${localRepository}", readonly = true, required = true)
     private ArtifactRepository localRepository;
 
-    @Parameter(defaultValue = "${session}", readonly = true)
-    private MavenSession session;
-
     @Component
     private ProjectDependencySupplier dependencySupplier;
 
-    @Component
-    private BuildPluginManager pluginManager;
-
     /**
      * The main class of the forked process.
      */
@@ -155,6 +156,110 @@ public class StartBrooklynMojo extends AbstractBrooklynMojo {
             defaultValue = "true")
     private Boolean testOutputDirOnClasspath;
 
+    /**
+     * Whether the server's classpath should be given in the manifest of a small jar written
+     * to the plugin's work directory rather than on the command line. Useful when the
+     * classpath is long enough to slow process creation or to exceed the operating
+     * system's limit on the length of command lines. The jar is only rewritten when the
+     * classpath changes.
+     */
+    @Parameter(
+            property = "brooklyn.usePathingJar",
+            defaultValue = "false")
+    private boolean usePathingJar;
+
+    /**
+     * Whether the server should use an application class data sharing archive to reduce
+     * its startup time. The first run for a classpath creates the archive when the server
+     * exits and later runs use it. Archives are recreated when the classpath, its jars or
+     * the version of Java changes. Requires the forked Java to be version 13 or later.
+     * <p/>
+     * The JVM only archives classes loaded from jars, so directories on the classpath,
+     * such as the project's output directories, are copied to jars in the plugin's work
+     * directory and the server's logging configuration is given as a system property.
+     */
+    @Parameter(
+            property = "brooklyn.useClassDataSharing",
+            defaultValue = "false")
+    private boolean useClassDataSharing;
+
+    /**
+     * The directory in which class data sharing archives are kept. Consider a directory
+     * outside the build directory if archives should survive <code>mvn clean</code>.
+     * Archives for different classpaths may share a directory: a new archive only replaces
+     * archives for the same classpath.
+     */
+    @Parameter(
+            property = "brooklyn.classDataSharingDirectory",
+            defaultValue = "${project.build.directory}/" + PLUGIN_NAME + "/cds")
+    private File classDataSharingDirectory;
+
+    /**
+     * A regular expression matched against each line the server writes to its console.
+     * When a line matches, a single request to the server's REST API confirms that it is
+     * ready. Detection of the server exiting during startup is immediate. If empty the
+     * goal instead polls the server's REST API until it is up.
+     */
+    @Parameter(
+            property = "brooklyn.readyPattern",
+            defaultValue = "Started Brooklyn console at")
+    private String readyPattern;
+
+    /**
+     * Whether the server's output should be written to rotating files in the plugin's
+     * work directory rather than printed to the console. Output is written by a dedicated
+     * thread through a bounded buffer so a slow console cannot hold up the server.
+     */
+    @Parameter(
+            property = "brooklyn.serverOutputToFile",
+            defaultValue = "false")
+    private boolean serverOutputToFile;
+
+    /**
+     * The approximate size in bytes after which the server's log file is rotated.
+     * Used when {@link #serverOutputToFile} is true.
+     */
+    @Parameter(
+            property = "brooklyn.serverLogFileSize",
+            defaultValue = "10485760")
+    private long serverLogFileSize;
+
+    /**
+     * The number of the server's log files to keep, including the current file.
+     * Used when {@link #serverOutputToFile} is true.
+     */
+    @Parameter(
+            property = "brooklyn.serverLogFiles",
+            defaultValue = "5")
+    private int serverLogFiles;
+
+    /**
+     * Whether lines of the server's output that look like warnings or errors should be
+     * written to the Maven log. Used when {@link #serverOutputToFile} is true.
+     */
+    @Parameter(
+            property = "brooklyn.mirrorServerWarnings",
+            defaultValue = "true")
+    private boolean mirrorServerWarnings;
+
+    /**
+     * The number of seconds to wait for the server's process to exit after it is asked to
+     * shut down. The process is then terminated.
+     */
+    @Parameter(
+            property = "brooklyn.serverExitTimeout",
+            defaultValue = "30")
+    private int serverExitTimeout;
+
+    /**
+     * The number of seconds to wait for the server's process to exit after it is terminated.
+     * The process and any processes it started are then killed.
+     */
+    @Parameter(
+            property = "brooklyn.serverTerminateTimeout",
+            defaultValue = "10")
+    private int serverTerminateTimeout;
+
     /**
      * The property to set to the newly-started server's URL.
      */
@@ -164,12 +269,71 @@ public class StartBrooklynMojo extends AbstractBrooklynMojo {
 
     /**
      * Indicates whether the goal should wait for the started server to report itself as running
-     * (ascertained by polling its REST API) before returning.
+     * (ascertained by polling its REST API) before returning. If false the goal returns as soon
+     * as the server is forked, so that other work in the build overlaps with the server starting,
+     * and the first request each later goal makes to the server waits for it to be ready, up to
+     * that goal's timeout.
      */
     @Parameter(
+            property = "brooklyn.waitForServerUp",
             defaultValue = "true")
     private boolean waitForServerUp;
 
+    /**
+     * Share the server between the modules of a multi-module build. When true the goal
+     * reuses a server forked earlier in the build with the same classpath, main class,
+     * launch command, Java options and arguments rather than forking a new one, and sets
+     * <code>brooklyn.port</code> to the port of the reused server.
+     * <p/>
+     * Each module's output directories are on its server's classpath by default, so modules
+     * only share a server when {@link #outputDirOnClasspath} and {@link #testOutputDirOnClasspath}
+     * are both false, and the server's code comes from dependencies. The <code>stop-server</code>
+     * goal leaves such servers running. They are stopped when the build ends if the plugin
+     * is declared with <code>&lt;extensions&gt;true&lt;/extensions&gt;</code>, and otherwise
+     * when Maven exits.
+     */
+    @Parameter(
+            property = "brooklyn.reuseServer",
+            defaultValue = "false")
+    private boolean reuseServer;
+
+    /**
+     * The directory in which ports chosen for servers are reserved while the servers start,
+     * when {@link #bindPort} is not given. Builds that share the directory never choose the
+     * same port for servers that are starting at the same time, so it should be shared by
+     * every build on the machine.
+     */
+    @Parameter(
+            property = "brooklyn.portReservationDirectory",
+            defaultValue = "${java.io.tmpdir}/" + PLUGIN_NAME + "/ports")
+    private File portReservationDirectory;
+
+    /**
+     * Blueprint files to check while the server starts, so that mistakes in them are reported
+     * in seconds rather than after the server is up. Paths are relative to the project's base
+     * directory. The checks are those made by the deploy goal when its
+     * <code>validateBlueprints</code> parameter is true.
+     */
+    @Parameter
+    private List<String> validateBlueprints;
+
+    /**
+     * Interpolate Maven properties in {@link #validateBlueprints} before checking them, as the
+     * deploy goal does when its <code>interpolateBlueprints</code> parameter is true.
+     */
+    @Parameter(
+            property = "brooklyn.interpolateBlueprints",
+            defaultValue = "false")
+    private boolean interpolateBlueprints;
+
+    /**
+     * The encoding of {@link #validateBlueprints}.
+     */
+    @Parameter(
+            property = "brooklyn.blueprintEncoding",
+            defaultValue = "UTF-8")
+    private String blueprintEncoding;
+
     /**
      * The user to connect to the Brooklyn server as.
      */
@@ -201,6 +365,13 @@ public class StartBrooklynMojo extends AbstractBrooklynMojo {
         this.launchCommand = launchCommand;
         this.serverClasspathScope = serverClasspathScope;
         this.serverUrlProperty = serverUrlProperty;
+        this.serverLogFileSize = 10 * 1024 * 1024;
+        this.serverLogFiles = 5;
+        this.mirrorServerWarnings = true;
+        this.serverExitTimeout = 30;
+        this.serverTerminateTimeout = 10;
+        this.blueprintEncoding = "UTF-8";
+        this.portReservationDirectory = new File(System.getProperty("java.io.tmpdir"), PLUGIN_NAME + "/ports");
     }
 
     @Override
@@ -209,15 +380,40 @@ public class StartBrooklynMojo extends AbstractBrooklynMojo {
             getLog().info("Tests are skipped.");
             return;
         }
-        String port = !Strings.isEmpty(bindPort) ? bindPort : reserveWebServerPort();
+        PortAllocator.Reservation reservation = Strings.isEmpty(bindPort) ? reserveWebServerPort() : null;
+        String port = reservation != null ? Integer.toString(reservation.getPort()) : bindPort;
         getLog().info("Chosen port " + port + " for server");
+        ExecutorService validator = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> validation = validator.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    validateBlueprints();
+                    return null;
+                }
+            });
+            startServer(port, reservation, validation);
+        } finally {
+            validator.shutdownNow();
+        }
+    }
 
+    private void startServer(String port, @Nullable PortAllocator.Reservation reservation, Future<?> validation)
+            throws MojoExecutionException, MojoFailureException {
         Path workDir = Paths.get(getProject().getBuild().getDirectory(), PLUGIN_NAME).toAbsolutePath();
         // Haven't found a way to inject these properties into the class.
         dependencySupplier.setLocalRepository(localRepository)
                 .setOutputDirOnClasspath(Boolean.TRUE.equals(outputDirOnClasspath))
                 .setTestOutputDirOnClasspath(Boolean.TRUE.equals(testOutputDirOnClasspath))
                 .setScope(serverClasspathScope);
+        if (reuseServer && (Boolean.TRUE.equals(outputDirOnClasspath) || Boolean.TRUE.equals(testOutputDirOnClasspath))) {
+            getLog().info("The server's classpath includes this project's output directories, " +
+                    "so it can only be reused by this project. Set outputDirOnClasspath and " +
+                    "testOutputDirOnClasspath to false to share it with other projects");
+        }
+        Stopwatch classpathStopwatch = Stopwatch.createStarted();
+        List<Path> classpath = dependencySupplier.get();
+        recordPhase("resolve-classpath", classpathStopwatch);
         ForkOptions options = ForkOptions.builder()
                 .workDir(workDir)
                 .bindAddress(bindAddress)
@@ -226,82 +422,153 @@ public class StartBrooklynMojo extends AbstractBrooklynMojo {
                 .launchCommand(launchCommand)
                 .additionalArguments(arguments != null ? arguments : Collections.<String>emptyList())
                 .javaOptions(javaOptions != null ? javaOptions : Collections.<String>emptyList())
-                .classpath(dependencySupplier.get())
+                .classpath(classpath)
+                .reuseServer(reuseServer)
+                .usePathingJar(usePathingJar)
+                .classDataSharingDirectory(useClassDataSharing ? cdsDirectory(workDir) : null)
+                .readyPattern(Strings.isNonBlank(readyPattern) ? readyPattern : null)
+                .logDirectory(serverOutputToFile ? workDir.resolve("logs") : null)
+                .logFileSize(serverLogFileSize)
+                .logFiles(serverLogFiles)
+                .mirrorWarnings(mirrorServerWarnings)
+                .exitTimeout(Duration.seconds(serverExitTimeout))
+                .terminateTimeout(Duration.seconds(serverTerminateTimeout))
                 .username(username)
                 .password(password)
+                .project(getProjectId())
                 .build();
 
-        ForkedServer forkedServer = getForker().execute(options);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        ForkedServer forkedServer;
+        try {
+            forkedServer = getForker().execute(options);
+        } catch (MojoExecutionException | RuntimeException e) {
+            if (reservation != null) {
+                reservation.release();
+            }
+            throw e;
+        }
+        recordPhase("fork", stopwatch);
         URL serverUrl = forkedServer.getServer();
+        String serverPort = Integer.toString(serverUrl.getPort());
+        if (!serverPort.equals(port) && getForker().isPooled(serverUrl.toString())) {
+            // A server forked earlier in the build was reused and keeps its own port.
+            getLog().info("Reusing server on port " + serverPort + " instead of " + port);
+            getProject().getProperties().setProperty(SERVER_PORT_PROPERTY, serverPort);
+            if (reservation != null) {
+                reservation.release();
+            }
+        } else if (reservation != null) {
+            releaseWhenReady(reservation, serverUrl);
+        }
         getProject().getProperties().setProperty(serverUrlProperty, serverUrl.toString());
+        awaitValidation(validation);
 
         if (waitForServerUp) {
-            waitForServerStartOrExit(forkedServer);
-            getLog().info("Server running at " + serverUrl);
+            awaitServerReady(serverUrl);
+            getLog().info("Server running at " + serverUrl + " " + Duration.millis(stopwatch.elapsed(TimeUnit.MILLISECONDS)) +
+                    " after forking (classpath given " + (usePathingJar ? "by pathing jar" : "on command line") + ")");
             BrooklynApi api = getApi(serverUrl);
             getLog().info("Server version: " + api.getServerApi().getVersion().getVersion());
         } else {
-            getLog().info("Server starting at " + serverUrl);
+            getLog().info("Server starting at " + serverUrl + ". Later goals will wait for it to be ready");
         }
     }
 
     /**
-     * Uses build-helper-maven-plugin:reserve-network-port to reserve a port for the Brooklyn
-     * server's web console. Sets the port in the context under {@link #SERVER_PORT_PROPERTY}.
-     */
-    private String reserveWebServerPort() throws MojoExecutionException {
-        executeMojo(
-                plugin(
-                        groupId("org.codehaus.mojo"),
-                        artifactId("build-helper-maven-plugin"),
-                        version("1.9.1")
-                ),
-                goal("reserve-network-port"),
-                configuration(
-                        element(name("portNames"), element(name("portName"), SERVER_PORT_PROPERTY))
-                ),
-                executionEnvironment(
-                        getProject(),
-                        session,
-                        pluginManager
-                )
-        );
-        return getProject().getProperties().getProperty(SERVER_PORT_PROPERTY);
+     * Loads and checks each of {@link #validateBlueprints}.
+     */
+    private void validateBlueprints() throws MojoFailureException {
+        if (validateBlueprints == null || validateBlueprints.isEmpty()) {
+            return;
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        for (String blueprint : validateBlueprints) {
+            File file = new File(blueprint);
+            if (!file.isAbsolute() && getProject().getBasedir() != null) {
+                file = new File(getProject().getBasedir(), blueprint);
+            }
+            String loaded;
+            try {
+                loaded = Blueprints.read(file.toPath(), Charset.forName(blueprintEncoding));
+            } catch (IOException e) {
+                throw new MojoFailureException("Failed to load " + file.getAbsolutePath(), e);
+            }
+            prepareBlueprint(file.getAbsolutePath(), loaded, interpolateBlueprints, true);
+        }
+        getLog().info("Checked " + validateBlueprints.size() + " blueprints in " + elapsed(stopwatch));
+        recordPhase("validate-blueprints", stopwatch);
     }
 
-    protected BrooklynApi getApi(URL server) {
-        if (username != null && password != null) {
-            return new BrooklynApi(server, username, password);
-        } else {
-            return new BrooklynApi(server);
+    /**
+     * Waits for the blueprints to have been checked, failing the goal if any were invalid.
+     * The forked server is left for the stop-server goal or the end of the build to stop.
+     */
+    private void awaitValidation(Future<?> validation) throws MojoFailureException {
+        try {
+            validation.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MojoFailureException) {
+                throw (MojoFailureException) e.getCause();
+            }
+            throw new MojoFailureException("Exception validating blueprints", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Exceptions.propagate(e);
         }
     }
 
+    private Path cdsDirectory(Path workDir) {
+        return classDataSharingDirectory != null
+                ? classDataSharingDirectory.toPath().toAbsolutePath()
+                : workDir.resolve("cds");
+    }
+
     /**
-     * Waits for the given endpoint to respond true to {@link ServerApi#isUp}
-     * or for the forked process to have exited.
-     */
-    private void waitForServerStartOrExit(final ForkedServer forkedServer) throws MojoFailureException {
-        final URL url = forkedServer.getServer();
-        final ServerApi api = getApi(url).getServerApi();
-        getLog().info("Waiting for server at " + url + " to be ready within " + getTimeout());
-        boolean isUp = Repeater.create("Waiting for server at " + url + " to be ready within " + getTimeout())
-                .every(Duration.ONE_SECOND)
-                .limitTimeTo(getTimeout())
-                .until(new Callable<Boolean>() {
-                    @Override
-                    public Boolean call() throws Exception {
-                        // The order of these is important - if forkedServer.hasExited() then api.isUp()
-                        // will throw an exception! The exception is thrown by RESTEasy.
-                        return forkedServer.hasExited() || api.isUp();
-                    }
-                })
-                .run();
-        if (forkedServer.hasExited()) {
-            throw new MojoFailureException("Forked server exited unexpectedly (exit code " + forkedServer.getExitCode() + ")");
-        } else if (!isUp) {
-            throw new MojoFailureException("Server at " + url + " does not appear to be running after " + getTimeout());
+     * Reserves a free port for the Brooklyn server's web console. Sets the port in the
+     * context under {@link #SERVER_PORT_PROPERTY}.
+     */
+    private PortAllocator.Reservation reserveWebServerPort() throws MojoExecutionException {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        PortAllocator.Reservation reservation;
+        try {
+            reservation = new PortAllocator(portReservationDirectory.toPath(), getLog()).reserve();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not reserve a port for the server", e);
         }
+        recordPhase("reserve-port", stopwatch);
+        getProject().getProperties().setProperty(SERVER_PORT_PROPERTY, Integer.toString(reservation.getPort()));
+        return reservation;
+    }
+
+    /**
+     * Holds the reservation until the server has bound the port, or has failed to,
+     * so that no other build chooses the port while the server starts.
+     */
+    private void releaseWhenReady(final PortAllocator.Reservation reservation, URL server) {
+        ListenableFuture<URL> readiness = getForker().getReadiness(server.toString());
+        if (readiness == null) {
+            reservation.release();
+        } else {
+            readiness.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    reservation.release();
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+    }
+
+    protected BrooklynApi getApi(URL server) {
+        return getApi(server, username, password);
+    }
+
+    private static Duration elapsed(Stopwatch stopwatch) {
+        return Duration.millis(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    }
+
+    void setValidateBlueprints(List<String> validateBlueprints) {
+        this.validateBlueprints = validateBlueprints;
     }
 
 }
@@ -21,6 +21,7 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableMap;
 
 /**
@@ -58,9 +59,11 @@ public class StopApplicationMojo extends AbstractInvokeBrooklynMojo {
         }
         getLog().info("Stopping application " + application);
         try {
+            Stopwatch stopwatch = Stopwatch.createStarted();
             String timeout = String.valueOf(getTimeout().toMilliseconds());
             getApi().getEffectorApi().invoke(application, application, "stop", timeout,
                     ImmutableMap.<String, Object>of());
+            recordPhase("stop-application", stopwatch);
         } catch (Exception e) {
             getLog().warn("Exception stopping application", e);
         }
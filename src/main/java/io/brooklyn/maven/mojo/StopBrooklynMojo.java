@@ -17,6 +17,7 @@ package io.brooklyn.maven.mojo;
 
 import java.net.URL;
 
+import org.apache.brooklyn.util.time.Duration;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -27,7 +28,10 @@ import io.brooklyn.maven.fork.ShutdownOptions;
  * Instruct a Brooklyn server to shut down.
  * <p/>
  * If the server was started by the {@link StartBrooklynMojo start goal} the plugin
- * will wait for the forked process to exit.
+ * will wait for the forked process to exit. Servers shared between projects are left
+ * running and are stopped when the build ends.
+ *
+ * @see io.brooklyn.maven.fork.StopServersAtSessionEnd
  */
 @Mojo(name = "stop-server",
         defaultPhase = LifecyclePhase.POST_INTEGRATION_TEST)
@@ -59,6 +63,24 @@ public class StopBrooklynMojo extends AbstractInvokeBrooklynMojo {
             defaultValue = "0")
     private String shutdownTimeout;
 
+    /**
+     * The number of seconds to wait for the process of a server forked by the start goal to exit after it is asked to
+     * shut down. The process is then terminated.
+     */
+    @Parameter(
+            property = "brooklyn.serverExitTimeout",
+            defaultValue = "30")
+    private int serverExitTimeout;
+
+    /**
+     * The number of seconds to wait for the process of a server forked by the start goal to exit after it is terminated.
+     * The process and any processes it started are then killed.
+     */
+    @Parameter(
+            property = "brooklyn.serverTerminateTimeout",
+            defaultValue = "10")
+    private int serverTerminateTimeout;
+
     /**
      * Constructor for use by Maven/Guice.
      */
@@ -71,6 +93,8 @@ public class StopBrooklynMojo extends AbstractInvokeBrooklynMojo {
         this.stopApplications = true;
         this.forceShutdownOnError = true;
         this.shutdownTimeout = "0";
+        this.serverExitTimeout = 30;
+        this.serverTerminateTimeout = 10;
     }
 
     @Override
@@ -79,6 +103,10 @@ public class StopBrooklynMojo extends AbstractInvokeBrooklynMojo {
             getLog().info("Tests are skipped.");
             return;
         }
+        if (getForker().isPooled(server.toString())) {
+            getLog().info("Leaving shared server at " + server + " running until the end of the build");
+            return;
+        }
         ShutdownOptions options = ShutdownOptions.builder()
                 .server(server)
                 .username(username)
@@ -86,7 +114,10 @@ public class StopBrooklynMojo extends AbstractInvokeBrooklynMojo {
                 .stopAllApplications(stopApplications)
                 .forceShutdownOnError(forceShutdownOnError)
                 .timeout(shutdownTimeout)
+                .exitTimeout(Duration.seconds(serverExitTimeout))
+                .terminateTimeout(Duration.seconds(serverTerminateTimeout))
                 .build();
         getForker().cleanUp(options);
     }
+
 }
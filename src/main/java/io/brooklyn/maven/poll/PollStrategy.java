@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.poll;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Random;
+
+import org.apache.brooklyn.util.time.Duration;
+
+import com.google.common.base.Function;
+
+/**
+ * Determines the delay between successive polls of a Brooklyn server. Each strategy
+ * is given the configured poll period: {@link #FIXED} always waits for it and the
+ * adaptive strategies treat it as the longest delay between polls.
+ */
+public enum PollStrategy {
+
+    /** Poll at the configured period. */
+    FIXED {
+        @Override
+        public Duration delay(int iteration, Duration period) {
+            return period;
+        }
+    },
+
+    /**
+     * Poll quickly at first and double the delay after each poll up to the
+     * configured period. Delays are jittered so that many concurrent waits
+     * do not poll the server in lockstep.
+     */
+    EXPONENTIAL {
+        @Override
+        public Duration delay(int iteration, Duration period) {
+            long base = INITIAL_DELAY.toMilliseconds() << Math.min(Math.max(iteration, 0), 20);
+            double jitter = 1 - JITTER + 2 * JITTER * RANDOM.nextDouble();
+            return Duration.min(Duration.millis((long) (base * jitter)), period);
+        }
+    },
+
+    /**
+     * Poll quickly for the first few seconds, when short deployments are most
+     * likely to complete, then at the configured period.
+     */
+    FAST_START {
+        @Override
+        public Duration delay(int iteration, Duration period) {
+            return iteration < FAST_START_ITERATIONS
+                    ? Duration.min(FAST_START_DELAY, period)
+                    : period;
+        }
+    };
+
+    /** The first delay used by {@link #EXPONENTIAL}. */
+    static final Duration INITIAL_DELAY = Duration.millis(100);
+    /** The proportion by which {@link #EXPONENTIAL} delays are randomly varied. */
+    static final double JITTER = 0.2;
+    /** The delay used by {@link #FAST_START} before it falls back to the configured period. */
+    static final Duration FAST_START_DELAY = Duration.millis(250);
+    static final int FAST_START_ITERATIONS = 20;
+
+    private static final Random RANDOM = new Random();
+
+    /**
+     * @param iteration The number of polls made so far, starting at zero.
+     * @param period The configured poll period.
+     * @return The time to wait before the next poll.
+     */
+    public abstract Duration delay(int iteration, Duration period);
+
+    /**
+     * @return A function suitable for {@link org.apache.brooklyn.util.repeat.Repeater#delayOnIteration}.
+     */
+    public Function<Integer, Duration> delays(final Duration period) {
+        checkNotNull(period, "period");
+        return new Function<Integer, Duration>() {
+            @Override
+            public Duration apply(Integer iteration) {
+                return delay(iteration != null ? iteration : 0, period);
+            }
+        };
+    }
+
+}
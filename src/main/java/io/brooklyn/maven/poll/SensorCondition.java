@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.poll;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+
+/**
+ * A condition on the values of a sensor on several entities. Each value must satisfy
+ * every configured test: being equal to a string, matching a regular expression and
+ * lying within numeric bounds. Values that are null, or that are not numbers when a
+ * bound is configured, satisfy none of them. The condition holds when {@link Match#ANY any}
+ * or {@link Match#ALL all} of the entities have acceptable values, and never holds if
+ * no entity has a value.
+ */
+public class SensorCondition {
+
+    /** Whether one or every entity must have an acceptable value. */
+    public enum Match {
+        ANY,
+        ALL
+    }
+
+    @Nullable
+    private final String equalTo;
+    @Nullable
+    private final Pattern pattern;
+    @Nullable
+    private final Double atLeast;
+    @Nullable
+    private final Double atMost;
+    private final Match match;
+
+    /**
+     * @throws IllegalArgumentException if none of equalTo, regex, atLeast and atMost is given.
+     */
+    public SensorCondition(@Nullable String equalTo, @Nullable String regex, @Nullable Double atLeast,
+            @Nullable Double atMost, Match match) {
+        checkArgument(equalTo != null || regex != null || atLeast != null || atMost != null,
+                "A sensor condition needs a value, a regex or a threshold");
+        this.equalTo = equalTo;
+        this.pattern = regex != null ? Pattern.compile(regex) : null;
+        this.atLeast = atLeast;
+        this.atMost = atMost;
+        this.match = checkNotNull(match, "match");
+    }
+
+    /**
+     * @param values Sensor values keyed by entity ID.
+     * @return true if the condition holds for the given values.
+     */
+    public boolean isSatisfiedBy(Map<String, Object> values) {
+        if (values.isEmpty()) {
+            return false;
+        }
+        for (Object value : values.values()) {
+            boolean accepted = accepts(value);
+            if (accepted && match == Match.ANY) {
+                return true;
+            } else if (!accepted && match == Match.ALL) {
+                return false;
+            }
+        }
+        return match == Match.ALL;
+    }
+
+    /**
+     * @return true if the given value of a single entity is acceptable.
+     */
+    public boolean accepts(@Nullable Object value) {
+        if (value == null) {
+            return false;
+        }
+        String string = value.toString();
+        if (equalTo != null && !equalTo.equals(string)) {
+            return false;
+        }
+        if (pattern != null && !pattern.matcher(string).matches()) {
+            return false;
+        }
+        if (atLeast != null || atMost != null) {
+            double number;
+            if (value instanceof Number) {
+                number = ((Number) value).doubleValue();
+            } else {
+                try {
+                    number = Double.parseDouble(string.trim());
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+            if ((atLeast != null && number < atLeast) || (atMost != null && number > atMost)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        List<String> tests = Lists.newArrayList();
+        if (equalTo != null) {
+            tests.add("equal to " + equalTo);
+        }
+        if (pattern != null) {
+            tests.add("matching " + pattern);
+        }
+        if (atLeast != null) {
+            tests.add("at least " + atLeast);
+        }
+        if (atMost != null) {
+            tests.add("at most " + atMost);
+        }
+        return Joiner.on(" and ").join(tests) + " on " + match.name().toLowerCase() + " matching entities";
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.poll;
+
+/**
+ * Determines what is polled while waiting for newly deployed applications to reach
+ * a status. Both watches poll according to the configured {@link PollStrategy}.
+ */
+public enum StatusWatch {
+
+    /** Poll each application's summary until it has the desired status. */
+    APPLICATION,
+
+    /**
+     * Poll the task that deployed each application until the task ends, then check
+     * the application's status. Applications whose task cannot be fetched from the
+     * server are watched as {@link #APPLICATION} instead.
+     */
+    TASK
+
+}
@@ -109,9 +109,13 @@ public abstract class AbstractBrooklynMojoTest {
     }
 
     protected MockResponse deployApplicationResponse() {
+        return deployApplicationResponse(APP_ID);
+    }
+
+    protected MockResponse deployApplicationResponse(String appId) {
         String body = Jsonya.newInstance()
                 .put("id", "taskid")
-                .put("entityId", APP_ID)
+                .put("entityId", appId)
                 .toString();
         return newJsonResponse().setBody(body);
     }
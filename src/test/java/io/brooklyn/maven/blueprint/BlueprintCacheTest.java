@@ -0,0 +1,102 @@
+package io.brooklyn.maven.blueprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+public class BlueprintCacheTest {
+
+    private static final String BLUEPRINT = "name: cached\nservices:\n- type: org.example.Entity\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        directory = folder.getRoot().toPath().resolve("blueprints");
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void testRevalidatesCachedCopyWithEtag() throws Exception {
+        server.enqueue(new MockResponse().setBody(BLUEPRINT).setHeader("ETag", "\"v1\""));
+        server.enqueue(new MockResponse().setResponseCode(304));
+        server.play();
+        BlueprintCache cache = newCache(0);
+        URL url = server.getUrl("/blueprint.yaml");
+
+        assertEquals(BLUEPRINT, cache.get(url, Charsets.UTF_8));
+        assertEquals(BLUEPRINT, cache.get(url, Charsets.UTF_8));
+
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+        RecordedRequest revalidation = server.takeRequest();
+        assertEquals("\"v1\"", revalidation.getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void testUsesCachedCopyWithinTtl() throws Exception {
+        server.enqueue(new MockResponse().setBody(BLUEPRINT));
+        server.play();
+        BlueprintCache cache = newCache(60);
+        URL url = server.getUrl("/blueprint.yaml");
+
+        assertEquals(BLUEPRINT, cache.get(url, Charsets.UTF_8));
+        assertEquals(BLUEPRINT, cache.get(url, Charsets.UTF_8));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testFallsBackToCachedCopyWhenServerFails() throws Exception {
+        server.enqueue(new MockResponse().setBody(BLUEPRINT));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.play();
+        BlueprintCache cache = newCache(0);
+        URL url = server.getUrl("/blueprint.yaml");
+
+        assertEquals(BLUEPRINT, cache.get(url, Charsets.UTF_8));
+        assertEquals(BLUEPRINT, cache.get(url, Charsets.UTF_8));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void testFailsWithoutCachedCopy() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.play();
+        try {
+            newCache(0).get(server.getUrl("/blueprint.yaml"), Charsets.UTF_8);
+            fail("Expected exception when blueprint is missing and not cached");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private BlueprintCache newCache(long ttlSeconds) {
+        return new BlueprintCache(directory, ttlSeconds, 1, 1, TimeUnit.SECONDS, new SilentLog());
+    }
+
+}
@@ -0,0 +1,60 @@
+package io.brooklyn.maven.blueprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.base.Joiner;
+
+public class BlueprintValidationTest {
+
+    @Test
+    public void testAcceptsServicesWithTypesAndLocation() {
+        BlueprintValidation validation = BlueprintValidation.of(Joiner.on('\n').join(
+                "name: valid",
+                "location: localhost",
+                "services:",
+                "- type: org.example.Entity",
+                "- serviceType: org.example.Other"));
+        assertTrue(validation.getErrors().toString(), validation.isValid());
+        assertTrue(validation.getWarnings().isEmpty());
+    }
+
+    @Test
+    public void testRejectsInvalidYaml() {
+        BlueprintValidation validation = BlueprintValidation.of("services: [unclosed");
+        assertFalse(validation.isValid());
+        assertTrue(validation.getErrors().get(0), validation.getErrors().get(0).startsWith("Blueprint is not valid YAML"));
+    }
+
+    @Test
+    public void testRejectsBlueprintsWithoutServicesOrType() {
+        assertFalse(BlueprintValidation.of("name: nothing to deploy\nlocation: localhost").isValid());
+        assertFalse(BlueprintValidation.of("just a string").isValid());
+        assertFalse(BlueprintValidation.of("").isValid());
+        assertFalse(BlueprintValidation.of("location: localhost\nservices: []").isValid());
+    }
+
+    @Test
+    public void testReportsServicesWithoutType() {
+        BlueprintValidation validation = BlueprintValidation.of(Joiner.on('\n').join(
+                "location: localhost",
+                "services:",
+                "- type: org.example.Entity",
+                "- name: untyped"));
+        assertEquals("Service 2 has no type", Joiner.on(',').join(validation.getErrors()));
+    }
+
+    @Test
+    public void testWarnsWhenNoLocation() {
+        BlueprintValidation validation = BlueprintValidation.of("services:\n- type: org.example.Entity");
+        assertTrue(validation.isValid());
+        assertEquals(1, validation.getWarnings().size());
+
+        validation = BlueprintValidation.of("services:\n- type: org.example.Entity\n  location: localhost");
+        assertTrue(validation.getWarnings().isEmpty());
+    }
+
+}
@@ -0,0 +1,62 @@
+package io.brooklyn.maven.blueprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+
+public class BlueprintsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPreservesContentExactly() throws Exception {
+        String blueprint = "name: \u00e9t\u00e9\r\nservices:\r\n- type: org.example.Entity\r\n\r\n";
+        Path file = folder.newFile().toPath();
+        Files.write(file, blueprint.getBytes(Charsets.ISO_8859_1));
+        assertEquals(blueprint, Blueprints.read(file, Charsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testReadsLargeFiles() throws Exception {
+        String line = "# " + Strings.repeat("x", 77) + "\n";
+        String blueprint = Strings.repeat(line, (int) (Blueprints.MAP_THRESHOLD / line.length()) + 1);
+        Path file = folder.newFile().toPath();
+        Files.write(file, blueprint.getBytes(Charsets.UTF_8));
+        assertTrue(Files.size(file) >= Blueprints.MAP_THRESHOLD);
+        assertEquals(blueprint, Blueprints.read(file, Charsets.UTF_8));
+    }
+
+    @Test
+    public void testSummarisesLongBlueprints() {
+        String shortBlueprint = "name: short";
+        assertEquals(shortBlueprint, Blueprints.summarise(shortBlueprint));
+
+        String longBlueprint = Strings.repeat("a\n", Blueprints.SUMMARY_LENGTH);
+        String summary = Blueprints.summarise(longBlueprint);
+        assertTrue(summary, summary.startsWith(longBlueprint.substring(0, Blueprints.SUMMARY_LENGTH)));
+        assertTrue(summary, summary.endsWith("[... " + Blueprints.SUMMARY_LENGTH + " more characters, " +
+                longBlueprint.length() + " characters and " + (Blueprints.SUMMARY_LENGTH + 1) + " lines in total]"));
+    }
+
+    @Test
+    public void testInterpolatesOnlyKnownProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("brooklyn.port", "8081");
+        properties.setProperty("dollars", "$1 \\ $2");
+        assertEquals("url: http://localhost:8081\ncost: $1 \\ $2\nlaunch: echo ${HOME} $brooklyn:root()",
+                Blueprints.interpolate("url: http://localhost:${brooklyn.port}\ncost: ${dollars}\n" +
+                        "launch: echo ${HOME} $brooklyn:root()", properties));
+    }
+
+}
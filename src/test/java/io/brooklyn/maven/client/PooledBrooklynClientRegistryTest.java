@@ -0,0 +1,78 @@
+package io.brooklyn.maven.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.rest.client.BrooklynApi;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+import io.brooklyn.maven.metrics.BasicBrooklynMetrics;
+
+public class PooledBrooklynClientRegistryTest {
+
+    private MockWebServer server;
+    private PooledBrooklynClientRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        registry = new PooledBrooklynClientRegistry();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void testSharesClientsForSameServerAndCredentials() throws Exception {
+        URL url = new URL("http://localhost:8081");
+        BrooklynApi client = registry.get(url, "user", "password");
+        assertSame(client, registry.get(new URL("http://localhost:8081"), "user", "password"));
+        assertNotSame(client, registry.get(url, "user", "other"));
+        assertNotSame(client, registry.get(url, null, null));
+        assertNotSame(client, registry.get(new URL("http://localhost:8082"), "user", "password"));
+    }
+
+    @Test
+    public void testClientsReuseConnections() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setBody("true").setHeader("Content-Type", "application/json"));
+        }
+        server.play();
+        URL url = server.getUrl("/");
+        registry.configure(2, 1, TimeUnit.MINUTES);
+        assertTrue(registry.get(url, null, null).getServerApi().isUp());
+        assertTrue(registry.get(url, null, null).getServerApi().isUp());
+        assertTrue(registry.get(url, "user", "password").getServerApi().isUp());
+        server.takeRequest();
+        server.takeRequest();
+        // The third request is the third on the first connection.
+        assertEquals(2, server.takeRequest().getSequenceNumber());
+    }
+
+    @Test
+    public void testRecordsRequestsInMetrics() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.play();
+        BasicBrooklynMetrics metrics = new BasicBrooklynMetrics();
+        registry.setMetrics(metrics);
+        try {
+            registry.get(server.getUrl("/"), null, null).getApplicationApi().get("abcdef");
+        } catch (Exception e) {
+            // Expected: the response was not found.
+        }
+        assertTrue(metrics.toString(), metrics.toString().contains("GET /v1/applications/{id}"));
+    }
+
+}
@@ -0,0 +1,248 @@
+package io.brooklyn.maven.fork;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.brooklyn.util.net.Networking;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.maven.shared.utils.cli.CommandLineUtils;
+import org.apache.maven.shared.utils.cli.Commandline;
+import org.apache.maven.shared.utils.cli.DefaultConsumer;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+public class BasicBrooklynForkerTest {
+
+    /** Stands in for a Brooklyn server that never comes up. */
+    public static class Sleeper {
+        public static void main(String[] args) throws Exception {
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+        }
+    }
+
+    /** Stands in for a Brooklyn server that exits as soon as it starts. */
+    public static class Exits {
+        public static void main(String[] args) {
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BasicBrooklynForker forker;
+    /** Servers are keyed by URL so each needs its own port. */
+    private int nextPort = 45678;
+
+    @Before
+    public void setUp() {
+        forker = new BasicBrooklynForker();
+        forker.setLogger(new ConsoleLogger());
+    }
+
+    @After
+    public void tearDown() {
+        forker.cleanUp();
+    }
+
+    @Test
+    public void testReusesExistingWorkDirectory() throws Exception {
+        Path workDir = folder.getRoot().toPath();
+        forker.buildCommandLine(options(workDir, "project"));
+        forker.buildCommandLine(options(workDir, "project"));
+        assertTrue(workDir.resolve("conf").resolve("logback.xml").toFile().isFile());
+    }
+
+    @Test
+    public void testCleanUpProjectLeavesOtherProjectsAndForkerRunning() throws Exception {
+        ForkedServer first = forker.execute(options(folder.newFolder("first").toPath(), "first"));
+        ForkedServer second = forker.execute(options(folder.newFolder("second").toPath(), "second"));
+
+        forker.cleanUpProject("first");
+        first.getExitCode(10, TimeUnit.SECONDS);
+        assertTrue(first.hasExited());
+        assertFalse(second.hasExited());
+        assertNull(forker.getReadiness(first.getServer().toString()));
+        assertNotNull(forker.getReadiness(second.getServer().toString()));
+
+        // The forker is still usable after a partial clean up.
+        ForkedServer third = forker.execute(options(folder.newFolder("third").toPath(), "first"));
+        assertFalse(third.hasExited());
+    }
+
+    @Test
+    public void testConcurrentProjectsShareOneServer() throws Exception {
+        final ForkOptions first = optionsBuilder(folder.newFolder("first").toPath(), "first").reuseServer(true).build();
+        final ForkOptions second = optionsBuilder(folder.newFolder("second").toPath(), "second").reuseServer(true).build();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            List<Future<ForkedServer>> servers = Lists.newArrayList();
+            for (final ForkOptions options : ImmutableList.of(first, second)) {
+                servers.add(executor.submit(new Callable<ForkedServer>() {
+                    @Override
+                    public ForkedServer call() throws Exception {
+                        start.await();
+                        return forker.execute(options);
+                    }
+                }));
+            }
+            start.countDown();
+            assertSame(servers.get(0).get(10, TimeUnit.SECONDS), servers.get(1).get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStoppingOneServerDoesNotBlockOtherForks() throws Exception {
+        final CountDownLatch shutdownReceived = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        MockWebServer brooklyn = new MockWebServer();
+        brooklyn.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                shutdownReceived.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                return new MockResponse();
+            }
+        });
+        brooklyn.play();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            ForkedServer server = forker.execute(optionsBuilder(folder.getRoot().toPath(), "project")
+                    .bindPort(Integer.toString(brooklyn.getPort()))
+                    .build());
+            final ShutdownOptions shutdown = ShutdownOptions.builder()
+                    .server(server.getServer())
+                    .exitTimeout(Duration.ONE_SECOND)
+                    .terminateTimeout(Duration.seconds(5))
+                    .build();
+            Future<?> stopping = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    forker.cleanUp(shutdown);
+                }
+            });
+            assertTrue(shutdownReceived.await(10, TimeUnit.SECONDS));
+            // The forker answers while the shutdown request is outstanding.
+            final ForkOptions otherOptions = options(folder.newFolder("other").toPath(), "other");
+            ForkedServer other = executor.submit(new Callable<ForkedServer>() {
+                @Override
+                public ForkedServer call() throws Exception {
+                    return forker.execute(otherOptions);
+                }
+            }).get(5, TimeUnit.SECONDS);
+            assertFalse(forker.isPooled(other.getServer().toString()));
+            release.countDown();
+            stopping.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+            brooklyn.shutdown();
+        }
+    }
+
+    @Test
+    public void testPollsServerThatNeverLogsReadyPattern() throws Exception {
+        MockWebServer brooklyn = new MockWebServer();
+        brooklyn.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+                        .setBody("true");
+            }
+        });
+        brooklyn.play();
+        try {
+            ForkOptions options = optionsBuilder(folder.getRoot().toPath(), "project")
+                    .bindPort(Integer.toString(brooklyn.getPort()))
+                    .readyPattern("A line the server never logs")
+                    .build();
+            ForkedServer server = forker.execute(options);
+            // Polled as often as a server whose output is not watched.
+            assertEquals(server.getServer(), forker.getReadiness(server.getServer().toString()).get(3, TimeUnit.SECONDS));
+        } finally {
+            brooklyn.shutdown();
+        }
+    }
+
+    @Test
+    public void testClassDataSharingCreatesAnArchiveThenUsesIt() throws Exception {
+        assumeTrue(new ClassDataSharing("java", new ConsoleLogger()).isSupported());
+        Path cds = folder.newFolder("cds").toPath();
+        Path testClasses = Paths.get(Exits.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        ForkOptions.Builder options = optionsBuilder(folder.newFolder("work").toPath(), "project")
+                .mainClass(Exits.class.getName())
+                .classDataSharingDirectory(cds);
+
+        Commandline first = forker.buildCommandLine(options.build());
+        List<String> arguments = Arrays.asList(first.getArguments());
+        String classpath = arguments.get(arguments.indexOf("-classpath") + 1);
+        assertFalse(classpath, classpath.contains(testClasses.toString()));
+        assertEquals(0, CommandLineUtils.executeCommandLine(first, new DefaultConsumer(), new DefaultConsumer()));
+        Path archive;
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(cds, "*.jsa")) {
+            archive = Iterables.getOnlyElement(archives);
+        }
+        assertTrue(Files.size(archive) > 0);
+
+        // -Xshare:on makes the JVM fail if it cannot map the archive.
+        Commandline second = forker.buildCommandLine(options.javaOptions(ImmutableList.of("-Xshare:on")).build());
+        assertTrue(Arrays.asList(second.getArguments()).contains("-XX:SharedArchiveFile=" + archive));
+        assertEquals(0, CommandLineUtils.executeCommandLine(second, new DefaultConsumer(), new DefaultConsumer()));
+    }
+
+    private ForkOptions options(Path workDir, String project) throws Exception {
+        return optionsBuilder(workDir, project).build();
+    }
+
+    private ForkOptions.Builder optionsBuilder(Path workDir, String project) throws Exception {
+        Path testClasses = Paths.get(Sleeper.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        return ForkOptions.builder()
+                .workDir(workDir)
+                .javaOptions(Collections.<String>emptyList())
+                .additionalArguments(Collections.<String>emptyList())
+                .classpath(ImmutableList.of(testClasses))
+                .mainClass(Sleeper.class.getName())
+                .launchCommand("launch")
+                .bindAddress("127.0.0.1")
+                .bindPort(Integer.toString(nextPort = Networking.nextAvailablePort(nextPort + 1)))
+                .terminateTimeout(Duration.seconds(5))
+                .project(project);
+    }
+
+}
@@ -0,0 +1,67 @@
+package io.brooklyn.maven.fork;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+public class ClassDataSharingTest {
+
+    private static final String JAVA_17 = "openjdk version \"17.0.9\" 2023-10-17\n";
+    private static final String CREATE = "-XX:ArchiveClassesAtExit=";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testNewArchiveOnlyReplacesArchivesForTheSameClasspath() throws Exception {
+        Path directory = folder.newFolder("cds").toPath();
+        Path jar = folder.newFile("server.jar").toPath();
+        Path otherArchive = Files.write(directory.resolve("0123456789-abcdef.jsa"), new byte[]{1});
+        ClassDataSharing sharing = new ClassDataSharing("java", new ConsoleLogger(), JAVA_17);
+
+        Path archive = Paths.get(Iterables.getOnlyElement(
+                sharing.javaOptions(directory, ImmutableList.of(jar), "Main")).substring(CREATE.length()));
+        Files.write(archive, new byte[]{1});
+        assertEquals(ImmutableList.of("-XX:SharedArchiveFile=" + archive),
+                sharing.javaOptions(directory, ImmutableList.of(jar), "Main"));
+
+        // The JVM would not map the archive once the jar changes.
+        Files.write(jar, new byte[]{1, 2, 3});
+        String option = Iterables.getOnlyElement(sharing.javaOptions(directory, ImmutableList.of(jar), "Main"));
+        assertTrue(option, option.startsWith(CREATE));
+        assertNotEquals(archive.toString(), option.substring(CREATE.length()));
+        assertFalse(Files.exists(archive));
+        assertTrue(Files.exists(otherArchive));
+    }
+
+    @Test
+    public void testFeatureVersionOfLegacyVersionString() {
+        assertEquals(8, ClassDataSharing.featureVersion(
+                "openjdk version \"1.8.0_392\"\nOpenJDK Runtime Environment (Temurin)(build 1.8.0_392-b08)\n"));
+    }
+
+    @Test
+    public void testFeatureVersionOfModernVersionString() {
+        assertEquals(17, ClassDataSharing.featureVersion("openjdk version \"17.0.9\" 2023-10-17\n"));
+        assertEquals(21, ClassDataSharing.featureVersion("java version \"21\" 2023-09-19 LTS\n"));
+    }
+
+    @Test
+    public void testFeatureVersionOfUnrecognisedOutput() {
+        assertEquals(-1, ClassDataSharing.featureVersion("java: command not found"));
+    }
+
+}
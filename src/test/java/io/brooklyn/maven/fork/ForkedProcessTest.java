@@ -0,0 +1,94 @@
+package io.brooklyn.maven.fork;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Stopwatch;
+import com.google.common.io.CharStreams;
+
+public class ForkedProcessTest {
+
+    private final Logger logger = new ConsoleLogger(Logger.LEVEL_DISABLED, "test");
+    private Process process;
+
+    @Before
+    public void assumeUnix() {
+        assumeFalse(System.getProperty("os.name", "").toLowerCase().startsWith("windows"));
+    }
+
+    @After
+    public void destroyProcess() {
+        if (process != null) process.destroy();
+    }
+
+    @Test
+    public void testTerminatesProcessAndDescendants() throws Exception {
+        ForkedProcess forked = fork("sleep 30 & wait");
+        String child = awaitChild(forked.getPid());
+        assertTrue(forked.destroy(10, TimeUnit.SECONDS));
+        assertFalse(forked.isAlive());
+        assertFalse("Expected child " + child + " to have been terminated", isRunning(child));
+    }
+
+    @Test
+    public void testKillsProcessThatIgnoresTerminate() throws Exception {
+        ForkedProcess forked = fork("trap '' TERM; sleep 30 & wait");
+        String child = awaitChild(forked.getPid());
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        assertFalse(forked.destroy(200, TimeUnit.MILLISECONDS));
+        assertTrue(stopwatch.elapsed(TimeUnit.SECONDS) < 5);
+        assertFalse(forked.isAlive());
+        assertFalse("Expected child " + child + " to have been killed", isRunning(child));
+    }
+
+    private ForkedProcess fork(String script) throws Exception {
+        process = new ProcessBuilder("sh", "-c", script).start();
+        ForkedProcess forked = new ForkedProcess(process, logger);
+        assertNotNull("Could not determine process ID", forked.getPid());
+        return forked;
+    }
+
+    private String awaitChild(int pid) throws Exception {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        while (stopwatch.elapsed(TimeUnit.SECONDS) < 10) {
+            String children = run("pgrep", "-P", Integer.toString(pid)).trim();
+            if (!children.isEmpty()) {
+                return children.split("\\s+")[0];
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Process " + pid + " started no children");
+    }
+
+    private boolean isRunning(String pid) throws Exception {
+        // Allows for the child to be reaped by init.
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        while (stopwatch.elapsed(TimeUnit.SECONDS) < 5) {
+            if (run("ps", "-o", "stat=", "-p", pid).trim().matches("|Z.*")) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+
+    private String run(String... command) throws Exception {
+        Process p = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = CharStreams.toString(new InputStreamReader(p.getInputStream(), Charsets.UTF_8));
+        p.waitFor();
+        return output;
+    }
+
+}
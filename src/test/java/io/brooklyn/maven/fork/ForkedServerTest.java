@@ -0,0 +1,67 @@
+package io.brooklyn.maven.fork;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.maven.shared.utils.cli.StreamConsumer;
+import org.junit.Test;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class ForkedServerTest {
+
+    private static final StreamConsumer NO_OP = new StreamConsumer() {
+        @Override
+        public void consumeLine(String line) {
+        }
+    };
+
+    @Test
+    public void testAwaitReturnsWhenOutputMatches() throws Exception {
+        StartupMonitor monitor = new StartupMonitor(Pattern.compile("Started Brooklyn console at"), NO_OP);
+        ForkedServer server = new ForkedServer(new URL("http://localhost:8081"),
+                SettableFuture.<Integer>create(), monitor, null);
+        assertTrue(server.isMonitoringOutput());
+        monitor.consumeLine("Starting Brooklyn web-console on loopback interface");
+        assertFalse(server.awaitStartedOrExited(10, TimeUnit.MILLISECONDS));
+        monitor.consumeLine("Started Brooklyn console at http://127.0.0.1:8081/");
+        assertTrue(server.awaitStartedOrExited(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAwaitReturnsWhenProcessExits() throws Exception {
+        StartupMonitor monitor = new StartupMonitor(Pattern.compile("Started"), NO_OP);
+        SettableFuture<Integer> exitCode = SettableFuture.create();
+        ForkedServer server = new ForkedServer(new URL("http://localhost:8081"), exitCode, monitor, null);
+        monitor.exitListener().run();
+        exitCode.set(1);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        assertFalse(server.awaitStartedOrExited(10, TimeUnit.SECONDS));
+        assertTrue(stopwatch.elapsed(TimeUnit.SECONDS) < 5);
+    }
+
+    @Test
+    public void testDestroyCancelsRunningProcess() throws Exception {
+        SettableFuture<Integer> exitCode = SettableFuture.create();
+        ForkedServer server = new ForkedServer(new URL("http://localhost:8081"), exitCode);
+        assertEquals(ForkedServer.Destruction.CANCELLED, server.destroy(1, TimeUnit.SECONDS));
+        assertTrue(exitCode.isCancelled());
+        assertTrue(server.hasExited());
+        assertEquals(-1, server.getExitCode(10, TimeUnit.MILLISECONDS));
+        assertEquals(ForkedServer.Destruction.EXITED, server.destroy(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testUnmonitoredServerDoesNotWait() throws Exception {
+        ForkedServer server = new ForkedServer(new URL("http://localhost:8081"), SettableFuture.<Integer>create());
+        assertFalse(server.isMonitoringOutput());
+        assertFalse(server.awaitStartedOrExited(10, TimeUnit.SECONDS));
+    }
+
+}
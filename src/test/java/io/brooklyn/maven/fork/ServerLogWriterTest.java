@@ -0,0 +1,75 @@
+package io.brooklyn.maven.fork;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+
+public class ServerLogWriterTest {
+
+    private static final Logger LOGGER = new ConsoleLogger(Logger.LEVEL_DISABLED, "test");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWritesAllLinesBeforeClosing() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("logs").resolve("server.log");
+        ServerLogWriter writer = new ServerLogWriter(file, 1024 * 1024, 2, false, LOGGER).start();
+        for (int i = 0; i < 100; i++) {
+            writer.consumeLine("line " + i);
+        }
+        writer.close();
+        List<String> lines = Files.readAllLines(file, Charsets.UTF_8);
+        assertEquals(100, lines.size());
+        assertEquals("line 0", lines.get(0));
+        assertEquals("line 99", lines.get(99));
+    }
+
+    @Test
+    public void testRotatesFiles() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("server.log");
+        ServerLogWriter writer = new ServerLogWriter(file, 20, 3, false, LOGGER).start();
+        for (String line : ImmutableList.of("aaaaaaaaaaaaaaaaaaaa", "bbbbbbbbbbbbbbbbbbbb",
+                "cccccccccccccccccccc", "dddddddddddddddddddd")) {
+            writer.consumeLine(line);
+        }
+        writer.close();
+        assertEquals(ImmutableList.of("dddddddddddddddddddd"), Files.readAllLines(file, Charsets.UTF_8));
+        assertEquals(ImmutableList.of("cccccccccccccccccccc"),
+                Files.readAllLines(file.resolveSibling("server.log.1"), Charsets.UTF_8));
+        assertEquals(ImmutableList.of("bbbbbbbbbbbbbbbbbbbb"),
+                Files.readAllLines(file.resolveSibling("server.log.2"), Charsets.UTF_8));
+        assertFalse(Files.exists(file.resolveSibling("server.log.3")));
+    }
+
+    @Test
+    public void testDropsOldestLinesWhenBufferIsFull() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("server.log");
+        // Not started, so nothing drains the buffer.
+        ServerLogWriter writer = new ServerLogWriter(file, 1024 * 1024, 1, false, LOGGER, 2);
+        writer.consumeLine("one");
+        writer.consumeLine("two");
+        writer.consumeLine("three");
+        writer.start();
+        writer.close();
+        List<String> lines = Files.readAllLines(file, Charsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0), lines.get(0).contains("1 lines of server output dropped"));
+        assertEquals("two", lines.get(1));
+        assertEquals("three", lines.get(2));
+    }
+
+}
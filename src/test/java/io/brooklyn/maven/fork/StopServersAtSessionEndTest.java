@@ -0,0 +1,58 @@
+package io.brooklyn.maven.fork;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.util.net.Networking;
+import org.apache.brooklyn.util.time.Duration;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableList;
+
+public class StopServersAtSessionEndTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStopsSharedServersWhenSessionEnds() throws Exception {
+        BasicBrooklynForker forker = new BasicBrooklynForker();
+        forker.setLogger(new ConsoleLogger());
+        ForkOptions options = ForkOptions.builder()
+                .workDir(folder.getRoot().toPath())
+                .javaOptions(Collections.<String>emptyList())
+                .additionalArguments(Collections.<String>emptyList())
+                .classpath(ImmutableList.of(Paths.get(BasicBrooklynForkerTest.Sleeper.class
+                        .getProtectionDomain().getCodeSource().getLocation().toURI())))
+                .mainClass(BasicBrooklynForkerTest.Sleeper.class.getName())
+                .launchCommand("launch")
+                .bindAddress("127.0.0.1")
+                .bindPort(Integer.toString(Networking.nextAvailablePort(46789)))
+                .terminateTimeout(Duration.seconds(5))
+                .exitTimeout(Duration.ONE_SECOND)
+                .reuseServer(true)
+                .project("project")
+                .build();
+        ForkedServer server = forker.execute(options);
+        String url = server.getServer().toString();
+        assertTrue(forker.isPooled(url));
+
+        StopServersAtSessionEnd participant = new StopServersAtSessionEnd();
+        participant.setForker(forker);
+        participant.setLogger(new ConsoleLogger());
+        participant.afterSessionEnd(null);
+
+        assertTrue("server should have exited", server.getExitCode(10, TimeUnit.SECONDS) >= 0);
+        assertFalse(forker.isPooled(url));
+        assertNull(forker.getReadiness(url));
+    }
+
+}
@@ -0,0 +1,60 @@
+package io.brooklyn.maven.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.gson.Gson;
+
+public class BasicBrooklynMetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWritesPhasesAndCallsToReport() throws Exception {
+        BasicBrooklynMetrics metrics = new BasicBrooklynMetrics();
+        metrics.recordPhase("app:start-server@start", "fork", 1500, TimeUnit.MILLISECONDS);
+        metrics.recordPhase("app:deploy@deploy", "time-to-running", 12, TimeUnit.SECONDS);
+        for (int i = 1; i <= 20; i++) {
+            metrics.recordCall("GET", "/v1/applications/{id}", 200, i, TimeUnit.MILLISECONDS);
+        }
+        metrics.recordCall("POST", "/v1/applications", 500, 40, TimeUnit.MILLISECONDS);
+
+        Path directory = folder.getRoot().toPath().resolve("brooklyn-maven-plugin");
+        metrics.writeReport(directory);
+
+        String json = new String(Files.readAllBytes(directory.resolve(BasicBrooklynMetrics.JSON_REPORT)), Charsets.UTF_8);
+        Map<String, Object> report = new Gson().fromJson(json, Map.class);
+        List<Map<String, Object>> phases = (List<Map<String, Object>>) report.get("phases");
+        assertEquals(2, phases.size());
+        assertEquals("fork", phases.get(0).get("phase"));
+        assertEquals(12000.0, phases.get(1).get("durationMillis"));
+
+        List<Map<String, Object>> calls = (List<Map<String, Object>>) report.get("calls");
+        assertEquals(2, calls.size());
+        Map<String, Object> get = calls.get(0);
+        assertEquals("GET /v1/applications/{id}", get.get("request"));
+        assertEquals(20.0, get.get("count"));
+        assertEquals(10.0, get.get("p50Millis"));
+        assertEquals(19.0, get.get("p95Millis"));
+        assertEquals(20.0, get.get("maxMillis"));
+        assertEquals(1.0, calls.get(1).get("errors"));
+
+        String summary = new String(Files.readAllBytes(directory.resolve(BasicBrooklynMetrics.SUMMARY_REPORT)), Charsets.UTF_8);
+        assertTrue(summary, summary.contains("time-to-running"));
+        assertTrue(summary, summary.contains("POST /v1/applications"));
+    }
+
+}
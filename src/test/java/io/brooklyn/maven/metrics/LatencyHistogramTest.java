@@ -0,0 +1,52 @@
+package io.brooklyn.maven.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i, TimeUnit.MICROSECONDS);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(95, histogram.getValueAtPercentile(95));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(50.5, histogram.getMean(), 0.001);
+    }
+
+    @Test
+    public void testLargeValuesAreWithinTwoPercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i, TimeUnit.MILLISECONDS);
+        }
+        assertWithinTwoPercent(500000, histogram.getValueAtPercentile(50));
+        assertWithinTwoPercent(990000, histogram.getValueAtPercentile(99));
+        assertEquals(1000000, histogram.getValueAtPercentile(100));
+        assertEquals(1000000, histogram.getMax());
+    }
+
+    @Test
+    public void testEmptyAndOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        histogram.record(-1, TimeUnit.MILLISECONDS);
+        histogram.record(Long.MAX_VALUE, TimeUnit.DAYS);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals((1L << 50) - 1, histogram.getValueAtPercentile(100));
+    }
+
+    private static void assertWithinTwoPercent(long expected, long actual) {
+        assertTrue("Expected " + actual + " to be within 2% of " + expected,
+                Math.abs(actual - expected) <= expected * 0.02);
+    }
+
+}
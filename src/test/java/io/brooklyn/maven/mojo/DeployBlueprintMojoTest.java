@@ -17,6 +17,7 @@ package io.brooklyn.maven.mojo;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -24,10 +25,16 @@ import java.io.File;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.spi.CharsetProvider;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.brooklyn.util.collections.Jsonya;
 import org.apache.brooklyn.util.net.Networking;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.testing.stubs.MavenProjectStub;
 import org.junit.Before;
@@ -38,14 +45,25 @@ import org.junit.rules.TemporaryFolder;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.io.Files;
 import com.google.common.io.Resources;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.RecordedRequest;
 
 import io.brooklyn.maven.AbstractBrooklynMojoTest;
 import io.brooklyn.maven.BrooklynMavenProjectStub;
+import io.brooklyn.maven.fork.BrooklynForker;
+import io.brooklyn.maven.fork.ForkOptions;
+import io.brooklyn.maven.fork.ForkedServer;
+import io.brooklyn.maven.fork.ShutdownOptions;
+import io.brooklyn.maven.poll.PollStrategy;
+import io.brooklyn.maven.poll.StatusWatch;
 
 public class DeployBlueprintMojoTest extends AbstractBrooklynMojoTest {
 
@@ -62,6 +80,38 @@ public class DeployBlueprintMojoTest extends AbstractBrooklynMojoTest {
 
     private String blueprintPath;
 
+    /** Reports a server forked earlier in the build as ready when told to. */
+    private static class StartingServerForker implements BrooklynForker {
+        final SettableFuture<URL> readiness = SettableFuture.create();
+
+        @Override
+        public ForkedServer execute(ForkOptions config) throws MojoExecutionException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isPooled(String server) {
+            return false;
+        }
+
+        @Override
+        public ListenableFuture<URL> getReadiness(String server) {
+            return readiness;
+        }
+
+        @Override
+        public void cleanUp() {
+        }
+
+        @Override
+        public void cleanUpProject(String project) {
+        }
+
+        @Override
+        public void cleanUp(ShutdownOptions options) {
+        }
+    }
+
     @Before
     public void setBlueprint() throws Exception {
         File f = folder.newFile();
@@ -108,6 +158,273 @@ public class DeployBlueprintMojoTest extends AbstractBrooklynMojoTest {
                 APP_ID, project.getProperties().getProperty(NEW_APP_PROPERTY));
     }
 
+    @Test
+    public void testAdaptivePollingNoticesRunningApplicationQuickly() throws Exception {
+        server.enqueue(deployApplicationResponse());
+        server.enqueue(applicationStatusResponse("STARTING"));
+        server.enqueue(applicationStatusResponse("STARTING"));
+        server.enqueue(applicationStatusResponse("RUNNING"));
+        server.play();
+
+        DeployBlueprintMojo mojo = new DeployBlueprintMojo(server.getUrl("/"), blueprintPath);
+        // A fixed strategy would take at least ten seconds to see the third status.
+        mojo.setPollPeriod(5, TimeUnit.SECONDS)
+                .setPollStrategy(PollStrategy.EXPONENTIAL);
+        executeMojoWithTimeout(mojo);
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @Test
+    public void testTaskWatchPollsDeploymentTaskThenChecksStatusOnce() throws Exception {
+        server.enqueue(deployApplicationResponse());
+        server.enqueue(taskResponse(null));
+        server.enqueue(taskResponse(System.currentTimeMillis()));
+        server.enqueue(applicationStatusResponse("RUNNING"));
+        server.play();
+
+        DeployBlueprintMojo mojo = new DeployBlueprintMojo(server.getUrl("/"), blueprintPath);
+        mojo.setPollPeriod(1, TimeUnit.MILLISECONDS)
+                .setStatusWatch(StatusWatch.TASK);
+        executeMojoWithTimeout(mojo);
+
+        assertEquals("/v1/applications", server.takeRequest().getPath());
+        assertEquals("/v1/activities/taskid", server.takeRequest().getPath());
+        assertEquals("/v1/activities/taskid", server.takeRequest().getPath());
+        assertEquals("/v1/applications/" + APP_ID, server.takeRequest().getPath());
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @Test
+    public void testTaskWatchFallsBackToApplicationStatusIfTaskUnavailable() throws Exception {
+        server.enqueue(deployApplicationResponse());
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(applicationStatusResponse("STARTING"));
+        server.enqueue(applicationStatusResponse("RUNNING"));
+        server.play();
+
+        DeployBlueprintMojo mojo = new DeployBlueprintMojo(server.getUrl("/"), blueprintPath);
+        mojo.setPollPeriod(1, TimeUnit.MILLISECONDS)
+                .setStatusWatch(StatusWatch.TASK);
+        executeMojoWithTimeout(mojo);
+
+        assertEquals("/v1/applications", server.takeRequest().getPath());
+        assertEquals("/v1/activities/taskid", server.takeRequest().getPath());
+        assertEquals("/v1/applications/" + APP_ID, server.takeRequest().getPath());
+        assertEquals("/v1/applications/" + APP_ID, server.takeRequest().getPath());
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @Test
+    public void testReusesRunningApplicationDeployedEarlier() throws Exception {
+        File records = new File(folder.getRoot(), "deployments.properties");
+        // First build: the blueprint's type is not in the catalog.
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(deployApplicationResponse());
+        server.enqueue(applicationStatusResponse("RUNNING"));
+        // Second build: the application is still running.
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(applicationStatusResponse("RUNNING"));
+        server.play();
+
+        DeployBlueprintMojo mojo = new DeployBlueprintMojo(server.getUrl("/"), blueprintPath, NEW_APP_PROPERTY);
+        mojo.setPollPeriod(1, TimeUnit.MILLISECONDS);
+        mojo.setProject(new BrooklynMavenProjectStub());
+        mojo.setReuseDeployments(records);
+        executeMojoWithTimeout(mojo);
+        assertTrue(records.isFile());
+
+        MavenProjectStub project = new BrooklynMavenProjectStub();
+        mojo = new DeployBlueprintMojo(server.getUrl("/"), blueprintPath, NEW_APP_PROPERTY);
+        mojo.setPollPeriod(1, TimeUnit.MILLISECONDS);
+        mojo.setProject(project);
+        mojo.setReuseDeployments(records);
+        executeMojoWithTimeout(mojo);
+
+        assertEquals("/v1/catalog/entities/brooklyn.entity.basic.EmptySoftwareProcess", server.takeRequest().getPath());
+        assertEquals("/v1/applications", server.takeRequest().getPath());
+        assertEquals("/v1/applications/" + APP_ID, server.takeRequest().getPath());
+        assertEquals("/v1/catalog/entities/brooklyn.entity.basic.EmptySoftwareProcess", server.takeRequest().getPath());
+        assertEquals("/v1/applications/" + APP_ID, server.takeRequest().getPath());
+        assertEquals(5, server.getRequestCount());
+        assertEquals(APP_ID, project.getProperties().getProperty(NEW_APP_PROPERTY));
+    }
+
+    @Test
+    public void testRedeploysIfEarlierApplicationIsNotRunning() throws Exception {
+        File records = new File(folder.getRoot(), "deployments.properties");
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(deployApplicationResponse("first"));
+        server.enqueue(applicationStatusResponse("RUNNING"));
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(applicationStatusResponse("STOPPED"));
+        server.enqueue(deployApplicationResponse("second"));
+        server.enqueue(applicationStatusResponse("RUNNING"));
+        server.play();
+
+        for (int i = 0; i < 2; i++) {
+            DeployBlueprintMojo mojo = new DeployBlueprintMojo(server.getUrl("/"), blueprintPath);
+            mojo.setPollPeriod(1, TimeUnit.MILLISECONDS);
+            mojo.setReuseDeployments(records);
+            executeMojoWithTimeout(mojo);
+        }
+
+        assertEquals(7, server.getRequestCount());
+        Properties recorded = new Properties();
+        recorded.load(Files.newReader(records, Charsets.ISO_8859_1));
+        assertEquals(ImmutableSet.of("second"), ImmutableSet.copyOf(recorded.values()));
+    }
+
+    @Test
+    public void testDeploysBlueprintsMatchingPatternConcurrently() throws Exception {
+        File dir = folder.newFolder("blueprints");
+        Files.write(YAML, new File(dir, "first.yaml"), Charsets.UTF_8);
+        Files.write(YAML, new File(dir, "second.yaml"), Charsets.UTF_8);
+        Files.write("not a blueprint", new File(dir, "notes.txt"), Charsets.UTF_8);
+
+        server.enqueue(deployApplicationResponse("app1"));
+        server.enqueue(deployApplicationResponse("app2"));
+        server.enqueue(applicationStatusResponse("RUNNING"));
+        server.enqueue(applicationStatusResponse("RUNNING"));
+        server.play();
+
+        final MavenProjectStub project = new BrooklynMavenProjectStub();
+        DeployBlueprintMojo mojo = new DeployBlueprintMojo(server.getUrl("/"), null, NEW_APP_PROPERTY);
+        mojo.setBlueprints(ImmutableList.of(dir.getAbsolutePath() + "/*.yaml"));
+        mojo.setMaxConcurrentDeployments(2);
+        mojo.setPollPeriod(1, TimeUnit.MILLISECONDS);
+        mojo.setProject(project);
+        executeMojoWithTimeout(mojo);
+
+        assertEquals(4, server.getRequestCount());
+        Properties properties = project.getProperties();
+        Set<String> apps = ImmutableSet.of("app1", "app2");
+        // Submission order is not deterministic so either blueprint may have either ID.
+        assertEquals(apps, ImmutableSet.of(
+                properties.getProperty(NEW_APP_PROPERTY + ".0"),
+                properties.getProperty(NEW_APP_PROPERTY + ".1")));
+        assertEquals(apps, ImmutableSet.of(
+                properties.getProperty(NEW_APP_PROPERTY + ".first"),
+                properties.getProperty(NEW_APP_PROPERTY + ".second")));
+        assertEquals(properties.getProperty(NEW_APP_PROPERTY + ".0"), properties.getProperty(NEW_APP_PROPERTY + ".first"));
+        assertEquals(apps, ImmutableSet.copyOf(properties.getProperty(NEW_APP_PROPERTY).split(",")));
+    }
+
+    @Test
+    public void testDeploysRepeatedBlueprintsAndSkipsSharedNames() throws Exception {
+        File first = new File(folder.newFolder("a"), "app.yaml");
+        File second = new File(folder.newFolder("b"), "app.yaml");
+        Files.write(YAML, first, Charsets.UTF_8);
+        Files.write(YAML, second, Charsets.UTF_8);
+
+        server.enqueue(deployApplicationResponse("app1"));
+        server.enqueue(deployApplicationResponse("app2"));
+        server.enqueue(deployApplicationResponse("app3"));
+        server.play();
+
+        MavenProjectStub project = new BrooklynMavenProjectStub();
+        DeployBlueprintMojo mojo = new DeployBlueprintMojo(server.getUrl("/"), null, NEW_APP_PROPERTY);
+        mojo.setBlueprints(ImmutableList.of(
+                first.getAbsolutePath(), second.getAbsolutePath(), first.getAbsolutePath()));
+        mojo.setNoWaitForRunning();
+        mojo.setProject(project);
+        executeMojoWithTimeout(mojo);
+
+        assertEquals(3, server.getRequestCount());
+        Properties properties = project.getProperties();
+        assertEquals(ImmutableSet.of("app1", "app2", "app3"), ImmutableSet.of(
+                properties.getProperty(NEW_APP_PROPERTY + ".0"),
+                properties.getProperty(NEW_APP_PROPERTY + ".1"),
+                properties.getProperty(NEW_APP_PROPERTY + ".2")));
+        assertNull(properties.getProperty(NEW_APP_PROPERTY + ".app"));
+    }
+
+    @Test
+    public void testDeploysNothingIfAnyBlueprintIsInvalid() throws Exception {
+        File dir = folder.newFolder("invalid");
+        Files.write(YAML, new File(dir, "first.yaml"), Charsets.UTF_8);
+        Files.write("location: localhost\nservices:\n- name: untyped", new File(dir, "second.yaml"), Charsets.UTF_8);
+        server.play();
+
+        DeployBlueprintMojo mojo = new DeployBlueprintMojo(server.getUrl("/"), null, NEW_APP_PROPERTY);
+        mojo.setBlueprints(ImmutableList.of(dir.getAbsolutePath() + "/*.yaml"));
+        mojo.setProject(new BrooklynMavenProjectStub());
+        mojo.setValidateBlueprints();
+        try {
+            executeMojoWithTimeout(mojo);
+            fail("Expected exception when a blueprint is invalid");
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Service 1 has no type"));
+        }
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void testInterpolatesProjectProperties() throws Exception {
+        File f = folder.newFile();
+        Files.write("location: localhost:${test.port}\nservices:\n- type: org.example.Entity:${project.version}",
+                f, Charsets.UTF_8);
+        server.enqueue(deployApplicationResponse());
+        server.play();
+
+        MavenProjectStub project = new BrooklynMavenProjectStub();
+        project.setVersion("1.2.3");
+        project.getProperties().setProperty("test.port", "8081");
+        DeployBlueprintMojo mojo = new DeployBlueprintMojo(server.getUrl("/"), f.getAbsolutePath(), NEW_APP_PROPERTY);
+        mojo.setInterpolateBlueprints();
+        mojo.setNoWaitForRunning();
+        mojo.setProject(project);
+        executeMojoWithTimeout(mojo);
+
+        RecordedRequest request = server.takeRequest(1, TimeUnit.MILLISECONDS);
+        assertEquals("location: localhost:8081\nservices:\n- type: org.example.Entity:1.2.3",
+                new String(request.getBody(), Charsets.UTF_8));
+    }
+
+    @Test
+    public void testWaitsForForkedServerToBeReady() throws Exception {
+        server.enqueue(deployApplicationResponse());
+        server.play();
+        final StartingServerForker forker = new StartingServerForker();
+        final URL url = server.getUrl("/");
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    forker.readiness.set(url);
+                }
+            }, 200, TimeUnit.MILLISECONDS);
+
+            DeployBlueprintMojo mojo = new DeployBlueprintMojo(url, blueprintPath, NEW_APP_PROPERTY);
+            mojo.setForker(forker);
+            mojo.setNoWaitForRunning();
+            mojo.setProject(new BrooklynMavenProjectStub());
+            executeMojoWithTimeout(mojo);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testFailsWithoutRequestsIfForkedServerNeverReady() throws Exception {
+        server.play();
+        StartingServerForker forker = new StartingServerForker();
+        forker.readiness.setException(new IllegalStateException("Forked server exited unexpectedly (exit code 1)"));
+
+        DeployBlueprintMojo mojo = new DeployBlueprintMojo(server.getUrl("/"), blueprintPath, NEW_APP_PROPERTY);
+        mojo.setForker(forker);
+        mojo.setProject(new BrooklynMavenProjectStub());
+        try {
+            executeMojoWithTimeout(mojo);
+            fail("Expected exception when forked server exits before it is ready");
+        } catch (MojoFailureException e) {
+            assertTrue(Joiner.on(' ').join(Throwables.getCausalChain(e)),
+                    Throwables.getRootCause(e).getMessage().contains("exited unexpectedly"));
+        }
+        assertEquals(0, server.getRequestCount());
+    }
+
     @Test
     public void testLoadsBlueprintFromUrl() throws Exception {
         // Pretending to be both the server hosting the blueprint and Brooklyn.
@@ -296,6 +613,16 @@ public class DeployBlueprintMojoTest extends AbstractBrooklynMojoTest {
         }
     }
 
+    private MockResponse taskResponse(Long endTimeUtc) {
+        Jsonya.Navigator<?> task = Jsonya.newInstance()
+                .put("id", "taskid")
+                .put("entityId", APP_ID);
+        if (endTimeUtc != null) {
+            task.put("endTimeUtc", endTimeUtc);
+        }
+        return newJsonResponse().setBody(task.toString());
+    }
+
     @Test
     public void testRespectsSkipTests() throws Exception {
         server.play();
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.mojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.util.collections.Jsonya;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import io.brooklyn.maven.AbstractBrooklynMojoTest;
+
+public class LoadMojoTest extends AbstractBrooklynMojoTest {
+
+    private static final String URL_SENSOR = "main.uri";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFetchesUrlFromSensorAndWritesReport() throws Exception {
+        final AtomicInteger fetches = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().contains("/descendants/sensor/" + URL_SENSOR)) {
+                    return newJsonResponse().setBody(Jsonya.newInstance()
+                            .put(APP_ID, server.getUrl("/webapp").toString())
+                            .toString());
+                } else if (request.getPath().equals("/webapp")) {
+                    fetches.incrementAndGet();
+                    return new MockResponse().setBody("Hello");
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        server.play();
+
+        File report = new File(folder.getRoot(), "load.json");
+        LoadMojo mojo = new LoadMojo(server.getUrl("/"), APP_ID, report);
+        mojo.setUrlSensor(URL_SENSOR);
+        mojo.setLoad(100, 2, 200, TimeUnit.MILLISECONDS);
+        mojo.setObjectives(5000.0, 99, 0.0);
+        executeMojoWithTimeout(mojo);
+
+        Map<String, Object> json = new Gson().fromJson(
+                new String(Files.readAllBytes(report.toPath()), Charsets.UTF_8), Map.class);
+        assertEquals((double) fetches.get(), json.get("requests"));
+        assertEquals(20.0, (Double) json.get("requests"), 2.0);
+        assertEquals(0.0, json.get("errors"));
+        Map<String, Object> latency = (Map<String, Object>) json.get("latency");
+        assertTrue(latency.containsKey("p99Millis"));
+        assertTrue((Double) latency.get("maxMillis") >= (Double) latency.get("p50Millis"));
+    }
+
+    @Test
+    public void testInvokesEffectorAndFailsWhenErrorRateBreached() throws Exception {
+        final AtomicInteger invocations = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String expected = "/v1/applications/" + APP_ID + "/entities/" + APP_ID + "/effectors/restart";
+                if (request.getMethod().equals("POST") && request.getPath().startsWith(expected)) {
+                    // Every other invocation fails.
+                    return invocations.incrementAndGet() % 2 == 0
+                            ? newJsonResponse().setBody("\"ok\"")
+                            : new MockResponse().setResponseCode(500);
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        server.play();
+
+        File report = new File(folder.getRoot(), "load.json");
+        LoadMojo mojo = new LoadMojo(server.getUrl("/"), APP_ID, report);
+        mojo.setEffector("restart", ImmutableMap.of("restartChildren", "true"));
+        mojo.setLoad(50, 1, 100, TimeUnit.MILLISECONDS);
+        mojo.setObjectives(null, 95, 0.1);
+        try {
+            executeMojoWithTimeout(mojo);
+            fail("Expected exception when half of the invocations fail");
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("error rate"));
+        }
+        assertTrue(report.exists());
+        assertTrue(invocations.get() >= 4);
+        assertTrue(server.takeRequest().getUtf8Body().contains("restartChildren"));
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.mojo;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PortAllocatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PortAllocator allocator;
+
+    @Before
+    public void setUp() throws Exception {
+        allocator = new PortAllocator(folder.getRoot().toPath().resolve("ports"), new SilentLog());
+    }
+
+    @Test
+    public void testReservesFreePort() throws Exception {
+        PortAllocator.Reservation reservation = allocator.reserve();
+        try {
+            assertTrue(reservation.getPort() > 0);
+            // The port is free for the server to bind.
+            try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+                channel.bind(new InetSocketAddress(reservation.getPort()));
+            }
+        } finally {
+            reservation.release();
+        }
+    }
+
+    @Test
+    public void testReservedPortIsNotReservedAgainUntilReleased() throws Exception {
+        PortAllocator.Reservation reservation = allocator.reserve();
+        int port = reservation.getPort();
+        assertNull(allocator.tryReserve(port));
+        assertNull("Separate allocators share reservations",
+                new PortAllocator(folder.getRoot().toPath().resolve("ports"), new SilentLog()).tryReserve(port));
+
+        reservation.release();
+        reservation.release();
+        PortAllocator.Reservation again = allocator.tryReserve(port);
+        assertNotNull(again);
+        again.release();
+    }
+
+}
@@ -19,17 +19,24 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.brooklyn.util.collections.Jsonya;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.RecordedRequest;
 
 import io.brooklyn.maven.AbstractBrooklynMojoTest;
 import io.brooklyn.maven.BrooklynMavenProjectStub;
+import io.brooklyn.maven.poll.SensorCondition;
 
 public class QuerySensorMojoTest extends AbstractBrooklynMojoTest {
 
@@ -99,6 +106,128 @@ public class QuerySensorMojoTest extends AbstractBrooklynMojoTest {
         assertEquals(4, server.getRequestCount());
     }
 
+    @Test
+    public void testQueriesSeveralSensorsAndSetsAProperty() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String sensor = request.getPath().replaceAll(".*/sensor/([^?]*).*", "$1");
+                return newJsonResponse().setBody(Jsonya.newInstance().put(APPLICATION, sensor + "-value").toString());
+            }
+        });
+        server.play();
+
+        MavenProject mavenProject = new BrooklynMavenProjectStub();
+        QuerySensorMojo mojo = newQuerySensorMojo();
+        mojo.setProject(mavenProject);
+        mojo.setSensors(ImmutableList.of(
+                new SensorQuery("host.address", "server.address", null),
+                new SensorQuery("service.state", null, "bar.*"),
+                new SensorQuery("main.uri", "uri", null)));
+        executeMojoWithTimeout(mojo);
+
+        assertEquals(3, server.getRequestCount());
+        assertEquals("host.address-value", mavenProject.getProperties().getProperty("server.address"));
+        assertEquals("service.state-value", mavenProject.getProperties().getProperty("service.state"));
+        assertEquals("main.uri-value", mavenProject.getProperties().getProperty("uri"));
+        Map<String, String> paths = Maps.newHashMap();
+        for (int i = 0; i < 3; i++) {
+            String path = server.takeRequest().getPath();
+            paths.put(path.replaceAll(".*/sensor/([^?]*).*", "$1"), path);
+        }
+        assertTrue(paths.get("host.address").endsWith("typeRegex=" + TYPE_REGEX));
+        assertTrue(paths.get("service.state").endsWith("typeRegex=bar.*"));
+    }
+
+    @Test
+    public void testWaitsForAllEntitiesToSatisfyCondition() throws Exception {
+        server.enqueue(newJsonResponse().setBody("{}"));
+        server.enqueue(newJsonResponse().setBody(Jsonya.newInstance().put("a", "12").put("b", "4").toString()));
+        server.enqueue(newJsonResponse().setBody(Jsonya.newInstance().put("a", "12").put("b", "10.5").toString()));
+        server.play();
+
+        MavenProject mavenProject = new BrooklynMavenProjectStub();
+        QuerySensorMojo mojo = newQuerySensorMojo();
+        mojo.setPollPeriod(1, TimeUnit.MILLISECONDS);
+        mojo.setProject(mavenProject);
+        mojo.setAwaitCondition(null, null, 10.0, null, SensorCondition.Match.ALL);
+        executeMojoWithTimeout(mojo);
+
+        assertEquals(3, server.getRequestCount());
+        assertEquals("[12, 10.5]", mavenProject.getProperties().getProperty(PROJECT_PROPERTY));
+    }
+
+    @Test
+    public void testStopsPollingSatisfiedSensors() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            private final AtomicInteger stateQueries = new AtomicInteger();
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String value = request.getPath().contains("/sensor/service.isUp")
+                        ? "true"
+                        : (stateQueries.incrementAndGet() < 3 ? "starting" : "running");
+                return newJsonResponse().setBody(Jsonya.newInstance().put(APPLICATION, value).toString());
+            }
+        });
+        server.play();
+
+        QuerySensorMojo mojo = newQuerySensorMojo();
+        mojo.setPollPeriod(1, TimeUnit.MILLISECONDS);
+        mojo.setProject(new BrooklynMavenProjectStub());
+        mojo.setSensors(ImmutableList.of(
+                new SensorQuery("service.isUp", null, null),
+                new SensorQuery("service.state", null, null)));
+        mojo.setAwaitCondition(null, "true|running", null, null, SensorCondition.Match.ANY);
+        executeMojoWithTimeout(mojo);
+
+        // service.isUp is satisfied by the first poll and service.state by the third.
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @Test
+    public void testBuildFailsIfConditionNotSatisfiedWithinTimeout() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return newJsonResponse().setBody(Jsonya.newInstance().put(APPLICATION, "false").toString());
+            }
+        });
+        server.play();
+
+        QuerySensorMojo mojo = newQuerySensorMojo();
+        mojo.setPollPeriod(10, TimeUnit.MILLISECONDS);
+        mojo.setTimeout(200, TimeUnit.MILLISECONDS);
+        mojo.setAwaitCondition("true", null, null, null, SensorCondition.Match.ALL);
+        try {
+            executeMojoWithTimeout(mojo);
+            fail("Expected exception when sensor never satisfies condition");
+        } catch (MojoFailureException e) {
+            assertTrue("Expected message to name the sensor, was: " + e.getMessage(),
+                    e.getMessage().startsWith(SENSOR + " on entities in " + APPLICATION));
+        }
+        assertTrue(server.getRequestCount() > 1);
+    }
+
+    @Test
+    public void testReusesEarlierRunningCheck() throws Exception {
+        server.enqueue(applicationStatusResponse("RUNNING"));
+        server.enqueue(newJsonResponse().setBody(Jsonya.newInstance().put(APPLICATION, "bob").toString()));
+        server.enqueue(newJsonResponse().setBody(Jsonya.newInstance().put(APPLICATION, "bob").toString()));
+        server.play();
+
+        Map<Object, Object> pluginContext = Maps.newHashMap();
+        for (int i = 0; i < 2; i++) {
+            QuerySensorMojo mojo = newQuerySensorMojo();
+            mojo.setPluginContext(pluginContext);
+            mojo.setProject(new BrooklynMavenProjectStub());
+            mojo.setWaitForRunning();
+            mojo.setReuseRunningCheck();
+            executeMojoWithTimeout(mojo);
+        }
+
+        assertEquals(3, server.getRequestCount());
+    }
+
     @Test
     public void testRespectsSkipTests() throws Exception {
         server.play();
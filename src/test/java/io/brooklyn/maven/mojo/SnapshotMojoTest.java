@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.mojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.util.collections.Jsonya;
+import org.apache.brooklyn.util.yaml.Yamls;
+import org.apache.maven.project.MavenProject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import io.brooklyn.maven.AbstractBrooklynMojoTest;
+import io.brooklyn.maven.BrooklynMavenProjectStub;
+
+public class SnapshotMojoTest extends AbstractBrooklynMojoTest {
+
+    private static final String ENTITIES = "/v1/applications/" + APP_ID + "/entities/";
+
+    /**
+     * Seconds to wait for the goal. Longer than the default because the suite's first
+     * REST client takes more than a second to build and these tests often run first.
+     */
+    private static final int TIMEOUT = 30;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Serves an application with two children, one of which has a child of its own.
+     */
+    @Before
+    public void serveEntityTree() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.equals(ENTITIES + APP_ID)) {
+                    return entity(APP_ID, "org.example.App");
+                } else if (path.equals(ENTITIES + APP_ID + "/children")) {
+                    return children(entitySummary("web", "org.example.WebCluster"),
+                            entitySummary("db", "org.example.Database"));
+                } else if (path.equals(ENTITIES + "web/children")) {
+                    return children(entitySummary("node", "org.example.WebServer"));
+                } else if (path.endsWith("/children")) {
+                    return children();
+                } else if (path.contains("/sensors/current-state")) {
+                    String entity = path.substring(ENTITIES.length(), path.indexOf("/sensors"));
+                    return newJsonResponse().setBody(Jsonya.newInstance()
+                            .put("service.isUp", true)
+                            .put("host.name", entity + ".example.com")
+                            .toString());
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        server.play();
+    }
+
+    @Test
+    public void testWritesSensorsOfMatchingEntitiesAsJson() throws Exception {
+        File file = new File(folder.getRoot(), "snapshot.json");
+        MavenProject project = new BrooklynMavenProjectStub();
+        SnapshotMojo mojo = new SnapshotMojo(server.getUrl("/"), APP_ID, file);
+        mojo.setProject(project);
+        mojo.setTypeRegex("org\\.example\\.Web.*");
+        mojo.setSensorRegex("host\\..*");
+        mojo.setMaxConcurrentRequests(2);
+        executeMojoWithTimeout(mojo, TIMEOUT, TimeUnit.SECONDS);
+
+        Map<?, ?> snapshot = (Map<?, ?>) Iterables.getOnlyElement(
+                Yamls.parseAll(new String(Files.readAllBytes(file.toPath()), Charsets.UTF_8)));
+        assertEquals(APP_ID, snapshot.get("application"));
+        Map<?, ?> entities = (Map<?, ?>) snapshot.get("entities");
+        assertEquals(ImmutableList.of("web", "node"), ImmutableList.copyOf(entities.keySet()));
+        Map<?, ?> node = (Map<?, ?>) entities.get("node");
+        assertEquals("org.example.WebServer", node.get("type"));
+        assertEquals("web", node.get("parent"));
+        assertEquals(ImmutableMap.of("host.name", "node.example.com"), node.get("sensors"));
+        assertEquals(file.getAbsolutePath(), project.getProperties().getProperty("brooklyn.snapshot"));
+        // Four entities walked, two of which had their sensors read.
+        assertEquals(7, server.getRequestCount());
+    }
+
+    @Test
+    public void testWritesPropertiesWhenFileNameEndsInProperties() throws Exception {
+        File file = new File(folder.getRoot(), "snapshot.properties");
+        SnapshotMojo mojo = new SnapshotMojo(server.getUrl("/"), APP_ID, file);
+        executeMojoWithTimeout(mojo, TIMEOUT, TimeUnit.SECONDS);
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            properties.load(in);
+        }
+        assertEquals("true", properties.getProperty(APP_ID + ".sensors.service.isUp"));
+        assertEquals("db.example.com", properties.getProperty("db.sensors.host.name"));
+        assertEquals("org.example.WebServer", properties.getProperty("node.type"));
+        assertEquals("web", properties.getProperty("node.parent"));
+        assertNull(properties.getProperty(APP_ID + ".parent"));
+        assertFalse(new File(folder.getRoot(), "snapshot.json").exists());
+    }
+
+    private MockResponse entity(String id, String type) {
+        return newJsonResponse().setBody(Jsonya.render(entitySummary(id, type)));
+    }
+
+    private MockResponse children(Map<?, ?>... entities) {
+        return newJsonResponse().setBody(Jsonya.render(ImmutableList.copyOf(entities)));
+    }
+
+    private Map<String, Object> entitySummary(String id, String type) {
+        return ImmutableMap.<String, Object>of("id", id, "name", id, "type", type,
+                "links", ImmutableMap.of());
+    }
+
+}
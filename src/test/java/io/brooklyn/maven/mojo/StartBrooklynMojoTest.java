@@ -16,9 +16,12 @@
 package io.brooklyn.maven.mojo;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Path;
@@ -27,11 +30,17 @@ import java.util.List;
 import java.util.concurrent.Future;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.testing.stubs.MavenProjectStub;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import io.brooklyn.maven.AbstractBrooklynMojoTest;
 import io.brooklyn.maven.BrooklynMavenProjectStub;
@@ -45,6 +54,9 @@ public class StartBrooklynMojoTest extends AbstractBrooklynMojoTest {
 
     private static final String DEPENDENCY_STRING = "/path/to/dependency";
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private static class RecordingForker implements BrooklynForker {
         ForkOptions options;
 
@@ -59,15 +71,47 @@ public class StartBrooklynMojoTest extends AbstractBrooklynMojoTest {
             }
         }
 
+        @Override
+        public boolean isPooled(String server) {
+            return false;
+        }
+
+        @Override
+        public ListenableFuture<URL> getReadiness(String server) {
+            return null;
+        }
+
         @Override
         public void cleanUp() {
         }
 
+        @Override
+        public void cleanUpProject(String project) {
+        }
+
         @Override
         public void cleanUp(ShutdownOptions options) {
         }
     }
 
+    /** Returns a pooled server on port 4321 as if it had been forked by an earlier project. */
+    private static class ReusingForker extends RecordingForker {
+        @Override
+        public ForkedServer execute(ForkOptions options) throws MojoExecutionException {
+            super.execute(options);
+            try {
+                return new ForkedServer(new URL("http", options.bindAddress(), 4321, ""), Futures.immediateFuture(0));
+            } catch (MalformedURLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean isPooled(String server) {
+            return true;
+        }
+    }
+
     private static class ConstantDependencySupplier extends ProjectDependencySupplier {
         @Override
         public List<Path> get() {
@@ -115,6 +159,52 @@ public class StartBrooklynMojoTest extends AbstractBrooklynMojoTest {
         assertEquals(dependencySupplier.get(), options.classpath());
     }
 
+    @Test
+    public void testPublishesPortOfReusedServer() throws Exception {
+        final MavenProjectStub project = new BrooklynMavenProjectStub();
+        final RecordingForker forker = new ReusingForker();
+        StartBrooklynMojo mojo = new StartBrooklynMojo(new ConstantDependencySupplier(),
+                "bindAddress", null, "mainClass", "launchCommand", "classpathScope", "mainUrlProperty");
+        mojo.setProject(project);
+        mojo.setForker(forker);
+        executeMojoWithTimeout(mojo);
+
+        assertNotEquals("4321", forker.options.bindPort());
+        assertEquals("4321", project.getProperties().getProperty("brooklyn.port"));
+        assertEquals("http://bindAddress:4321", project.getProperties().getProperty("mainUrlProperty"));
+    }
+
+    @Test
+    public void testPublishesPortOfReusedServerWhenPortIsConfigured() throws Exception {
+        final MavenProjectStub project = new BrooklynMavenProjectStub();
+        StartBrooklynMojo mojo = new StartBrooklynMojo(new ConstantDependencySupplier(),
+                "bindAddress", "1234", "mainClass", "launchCommand", "classpathScope", "mainUrlProperty");
+        mojo.setProject(project);
+        mojo.setForker(new ReusingForker());
+        executeMojoWithTimeout(mojo);
+
+        assertEquals("4321", project.getProperties().getProperty("brooklyn.port"));
+    }
+
+    @Test
+    public void testFailsIfBlueprintToValidateIsInvalid() throws Exception {
+        File blueprint = folder.newFile("invalid.yaml");
+        Files.write("services: [unclosed", blueprint, Charsets.UTF_8);
+        final RecordingForker forker = new RecordingForker();
+        StartBrooklynMojo mojo = new StartBrooklynMojo(new ConstantDependencySupplier(),
+                "bindAddress", "1234", "mainClass", "launchCommand", "classpathScope", "mainUrlProperty");
+        mojo.setProject(new BrooklynMavenProjectStub());
+        mojo.setForker(forker);
+        mojo.setValidateBlueprints(ImmutableList.of(blueprint.getAbsolutePath()));
+        try {
+            executeMojoWithTimeout(mojo);
+            fail("Expected exception when blueprint is invalid");
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("not valid YAML"));
+        }
+        assertNotNull("Server should be forked while blueprints are validated", forker.options);
+    }
+
     @Test
     public void testRespectsSkipTests() throws Exception {
         server.play();
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.poll;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.brooklyn.util.time.Duration;
+import org.junit.Test;
+
+public class PollStrategyTest {
+
+    private static final Duration PERIOD = Duration.FIVE_SECONDS;
+
+    @Test
+    public void testFixedAlwaysUsesPeriod() {
+        for (int i = 0; i < 50; i++) {
+            assertEquals(PERIOD, PollStrategy.FIXED.delay(i, PERIOD));
+        }
+    }
+
+    @Test
+    public void testExponentialStartsQuicklyAndIsCappedByPeriod() {
+        Duration first = PollStrategy.EXPONENTIAL.delay(0, PERIOD);
+        assertFalse("Expected first delay to be short, was " + first,
+                first.isLongerThan(Duration.millis(150)));
+        Duration previous = Duration.ZERO;
+        for (int i = 0; i < 100; i++) {
+            Duration delay = PollStrategy.EXPONENTIAL.delay(i, PERIOD);
+            assertFalse("Delay " + delay + " on iteration " + i + " exceeds period",
+                    delay.isLongerThan(PERIOD));
+            previous = delay;
+        }
+        assertEquals(PERIOD, previous);
+    }
+
+    @Test
+    public void testFastStartPollsQuicklyThenUsesPeriod() {
+        assertTrue(PERIOD.isLongerThan(PollStrategy.FAST_START.delay(0, PERIOD)));
+        assertEquals(PERIOD, PollStrategy.FAST_START.delay(PollStrategy.FAST_START_ITERATIONS, PERIOD));
+    }
+
+    @Test
+    public void testAdaptiveStrategiesNeverExceedShortPeriod() {
+        Duration period = Duration.millis(1);
+        for (PollStrategy strategy : PollStrategy.values()) {
+            assertEquals(period, strategy.delay(0, period));
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 by Cloudsoft Corporation Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.brooklyn.maven.poll;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class SensorConditionTest {
+
+    private static final Map<String, Object> MIXED = ImmutableMap.<String, Object>of("a", "true", "b", "false");
+
+    @Test
+    public void testMatchAnyAndAll() {
+        assertTrue(new SensorCondition("true", null, null, null, SensorCondition.Match.ANY).isSatisfiedBy(MIXED));
+        assertFalse(new SensorCondition("true", null, null, null, SensorCondition.Match.ALL).isSatisfiedBy(MIXED));
+        assertTrue(new SensorCondition(null, "true|false", null, null, SensorCondition.Match.ALL).isSatisfiedBy(MIXED));
+    }
+
+    @Test
+    public void testNeverSatisfiedWithoutValues() {
+        Map<String, Object> none = Collections.emptyMap();
+        assertFalse(new SensorCondition(null, ".*", null, null, SensorCondition.Match.ALL).isSatisfiedBy(none));
+        assertFalse(new SensorCondition(null, ".*", null, null, SensorCondition.Match.ANY).isSatisfiedBy(none));
+    }
+
+    @Test
+    public void testThresholds() {
+        SensorCondition between = new SensorCondition(null, null, 1.0, 10.0, SensorCondition.Match.ALL);
+        assertTrue(between.accepts(1));
+        assertTrue(between.accepts("9.5"));
+        assertFalse(between.accepts(10.5));
+        assertFalse(between.accepts("0"));
+        assertFalse(between.accepts("not a number"));
+        assertFalse(between.accepts(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequiresATest() {
+        new SensorCondition(null, null, null, null, SensorCondition.Match.ANY);
+    }
+
+}